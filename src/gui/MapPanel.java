@@ -6,10 +6,14 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.geom.AffineTransform;
 import javax.swing.JPanel;
 import models.*;
+import simulation.ApproachLoads;
 import simulation.SimulationEngine;
+import simulation.SpatialIndex;
 
 // Handles the graphical rendering of the simulation. It draws the map, roads, nodes, traffic lights, and vehicles. Supports zoom/scaling and role-based view filtering.
 public class MapPanel extends JPanel {
@@ -18,11 +22,37 @@ public class MapPanel extends JPanel {
     private CityGraph graph;
     private SimulationEngine engine;
     private String currentRole = "";
+    private CsrGraph areaSource; // Graph the cached map area was computed for
+    private double[] area;
+    private double viewScale = 1, viewTranslateX = 0, viewTranslateY = 0; // Last map-to-screen transform, to map clicks back
+    private Node selectedNode;
+    private Vehicle selectedVehicle;
+    private int selectedGeneration;  // Vehicle handles are pooled; a different generation means the selected vehicle has left
 
     public MapPanel(CityGraph graph, SimulationEngine engine) { 
     	this.graph = graph;
         this.engine = engine;
     	setBackground(new Color(30, 30, 30)); 
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                select(e.getX(), e.getY());
+            }
+        });
+    }
+
+    // Click-to-select: converts the click to map coordinates and asks the spatial index for the nearest vehicle, then the nearest node.
+    private void select(int screenX, int screenY) {
+        double[] area = virtualArea();
+        double mapX = (screenX - viewTranslateX) / viewScale + area[0];
+        double mapY = (screenY - viewTranslateY) / viewScale + area[1];
+        SpatialIndex index = engine.getSpatialIndex();
+        synchronized (engine.vehicles) { // The index reads vehicle positions from the store, which only the lock holder may do
+            selectedVehicle = index.nearestVehicle(mapX, mapY, 15);
+            if (selectedVehicle != null) selectedGeneration = selectedVehicle.generation();
+        }
+        selectedNode = (selectedVehicle == null) ? index.nearestNode(mapX, mapY, 20) : null;
+        repaint();
     }
     
     // Updates the current user role to apply view filters (e.g., Bus Driver mode).
@@ -45,52 +75,61 @@ public class MapPanel extends JPanel {
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         // Centers and scales the map to fit the current window size while maintaining aspect ratio.
-        double virtualWidth = 1250.0;
-        double virtualHeight = 900.0;
+        double[] area = virtualArea();
+        double virtualWidth = area[2] - area[0];
+        double virtualHeight = area[3] - area[1];
         double panelWidth = getWidth();
         double panelHeight = getHeight();
         double scale = Math.min(panelWidth / virtualWidth, panelHeight / virtualHeight);
         double translateX = (panelWidth - (virtualWidth * scale)) / 2;
         double translateY = (panelHeight - (virtualHeight * scale)) / 2;
+        viewScale = scale;
+        viewTranslateX = translateX;
+        viewTranslateY = translateY;
 
+        AffineTransform screen = g2.getTransform();
         g2.translate(translateX, translateY);
         g2.scale(scale, scale);
+        g2.translate(-area[0], -area[1]);
+
+        // Vehicles are drawn from a copy taken under the engine lock, since the tick keeps writing the store meanwhile
+        VehicleSnapshot vehicles = engine.snapshotVehicles();
 
         // 1. ROADS
         g2.setStroke(new BasicStroke(2));
 
-        for (int id : graph.adjList.keySet()) {
-            Node n1 = graph.nodes.get(id);
-            for (Edge e : graph.adjList.get(id)) {
-                Node n2 = e.target;
-                double[] offsets = calculateOffset(n1.x, n1.y, n2.x, n2.y, BASE_LANE_OFFSET);
-                int x1 = (int) (n1.x + offsets[0]);
-                int y1 = (int) (n1.y + offsets[1]);
-                int x2 = (int) (n2.x + offsets[0]);
-                int y2 = (int) (n2.y + offsets[1]);
-
-                g2.setColor(new Color(100, 100, 100));
-                g2.drawLine(x1, y1, x2, y2);
-
-                g2.setColor(new Color(120, 120, 120));
-                g2.fillOval((x1+x2)/2 - 1, (y1+y2)/2 - 1, 3, 3);
-            }
+        CsrGraph csr = graph.csr;
+        for (int e = 0; e < csr.edgeCount; e++) {
+            Node n1 = csr.nodes[csr.sources[e]];
+            Node n2 = csr.nodes[csr.targets[e]];
+            double[] offsets = calculateOffset(n1.x, n1.y, n2.x, n2.y, BASE_LANE_OFFSET);
+            int x1 = (int) (n1.x + offsets[0]);
+            int y1 = (int) (n1.y + offsets[1]);
+            int x2 = (int) (n2.x + offsets[0]);
+            int y2 = (int) (n2.y + offsets[1]);
+
+            g2.setColor(new Color(100, 100, 100));
+            g2.drawLine(x1, y1, x2, y2);
+
+            g2.setColor(new Color(120, 120, 120));
+            g2.fillOval((x1+x2)/2 - 1, (y1+y2)/2 - 1, 3, 3);
         }
 
         // BUS ROUTES
         if ("BUS_DRIVER".equals(currentRole)) {
             g2.setStroke(new BasicStroke(2));
-            for (Vehicle v : engine.vehicles) {
-                if (v.type == VehicleType.BUS) {
-                    Color busColor = getBusColor(v.id);
+            for (int i = 0; i < vehicles.size; i++) {
+                if (vehicles.types[i] == VehicleType.BUS) {
+                    String id = vehicles.ids[i];
+                    Color busColor = getBusColor(id);
                     g2.setColor(new Color(busColor.getRed(), busColor.getGreen(), busColor.getBlue(), 200));
 
                     double specificOffset;
-                    if (v.id.endsWith("A")) specificOffset = 6.0;
-                    else if (v.id.endsWith("B")) specificOffset = 10.0;
+                    if (id.endsWith("A")) specificOffset = 6.0;
+                    else if (id.endsWith("B")) specificOffset = 10.0;
                     else specificOffset = 14.0;
 
-                    drawPath(g2, v, specificOffset);
+                    drawPath(g2, vehicles.routes[i], specificOffset);
                 }
             }
         }
@@ -98,29 +137,31 @@ public class MapPanel extends JPanel {
         // EMERGENCY ROUTES
         if ("EMERGENCY".equals(currentRole)) {
             g2.setStroke(new BasicStroke(2));
-            for (Vehicle v : engine.vehicles) {
-                if (v.type == VehicleType.AMBULANCE || v.type == VehicleType.POLICE_CAR || v.type == VehicleType.FIRE_TRUCK) {
-                    if (v.isReturning && v.type != VehicleType.AMBULANCE) {
+            for (int i = 0; i < vehicles.size; i++) {
+                VehicleType type = vehicles.types[i];
+                if (type == VehicleType.AMBULANCE || type == VehicleType.POLICE_CAR || type == VehicleType.FIRE_TRUCK) {
+                    if (vehicles.returning[i] && type != VehicleType.AMBULANCE) {
                         continue;
                     }
 
-                    if (v.type == VehicleType.AMBULANCE) g2.setColor(new Color(255, 0, 0, 180));
-                    else if (v.type == VehicleType.POLICE_CAR) g2.setColor(new Color(0, 0, 255, 180));
+                    if (type == VehicleType.AMBULANCE) g2.setColor(new Color(255, 0, 0, 180));
+                    else if (type == VehicleType.POLICE_CAR) g2.setColor(new Color(0, 0, 255, 180));
                     else g2.setColor(new Color(255, 165, 0, 180));
 
-                    drawPath(g2, v, 4.0);
+                    drawPath(g2, vehicles.routes[i], 4.0);
                 }
             }
         }
 
         // 2. NODES AND LIGHTS
-        for (Node n : graph.nodes.values()) {
+        for (Node n : csr.nodes) {
             switch (n.type) {
                 case INTERSECTION:
                     g2.setColor(new Color(60, 60, 70));
                     g2.fillOval(n.x - 12, n.y - 12, 24, 24);
 
-                    boolean nsGreen = n.trafficLight.northSouthGreen;
+                    ApproachLoads loads = engine.getApproachLoads(); // Lights are brought up to date lazily, so project the current phase
+                    boolean nsGreen = n.trafficLight.northSouthGreenAt(engine.getTickCount(), loads.northSouth(n.index), loads.eastWest(n.index));
 
                     g2.setColor(nsGreen ? Color.GREEN : Color.RED);
                     g2.fillOval(n.x - 4, n.y - 16, 8, 8);
@@ -152,38 +193,42 @@ public class MapPanel extends JPanel {
         }
 
         // 3. VEHICLES
-        for (Vehicle v : engine.vehicles) {
-            if (v.next == null) continue;
-
-            if ("BUS_DRIVER".equals(currentRole) && v.type != VehicleType.BUS) {
+        for (int i = 0; i < vehicles.size; i++) {
+            Node current = vehicles.current[i], next = vehicles.next[i];
+            if (next == null) continue;
+            double progress = vehicles.progress[i];
+            VehicleType type = vehicles.types[i];
+            String id = vehicles.ids[i];
+
+            if ("BUS_DRIVER".equals(currentRole) && type != VehicleType.BUS) {
                 continue;
             }
 
             double specificOffset = BASE_LANE_OFFSET;
-            if (v.type == VehicleType.BUS) {
-                if (v.id.endsWith("A")) specificOffset = 6.0;
-                else if (v.id.endsWith("B")) specificOffset = 10.0;
+            if (type == VehicleType.BUS) {
+                if (id.endsWith("A")) specificOffset = 6.0;
+                else if (id.endsWith("B")) specificOffset = 10.0;
                 else specificOffset = 14.0;
             }
 
-            double curLineX = v.current.x + (v.next.x - v.current.x) * v.progress;
-            double curLineY = v.current.y + (v.next.y - v.current.y) * v.progress;
+            double curLineX = current.x + (next.x - current.x) * progress;
+            double curLineY = current.y + (next.y - current.y) * progress;
 
-            double[] offsets = calculateOffset(v.current.x, v.current.y, v.next.x, v.next.y, specificOffset);
+            double[] offsets = calculateOffset(current.x, current.y, next.x, next.y, specificOffset);
             int drawX = (int) (curLineX + offsets[0]);
             int drawY = (int) (curLineY + offsets[1]);
 
             Color vehicleColor;
-            switch (v.type) {
+            switch (type) {
                 case AMBULANCE: vehicleColor = Color.RED; break;
                 case POLICE_CAR: vehicleColor = Color.BLUE; break;
                 case FIRE_TRUCK: vehicleColor = Color.ORANGE; break;
-                case BUS: vehicleColor = getBusColor(v.id); break;
+                case BUS: vehicleColor = getBusColor(id); break;
                 default: vehicleColor = Color.YELLOW; break;
             }
 
             int vWidth = 16; int vHeight = 10;
-            double angle = Math.atan2(v.next.y - v.current.y, v.next.x - v.current.x);
+            double angle = Math.atan2(next.y - current.y, next.x - current.x);
             AffineTransform old = g2.getTransform();
             g2.translate(drawX, drawY);
             g2.rotate(angle);
@@ -197,18 +242,65 @@ public class MapPanel extends JPanel {
             g2.rotate(-angle);
             g2.setFont(new Font("Arial", Font.BOLD, 9));
             g2.setColor(Color.WHITE);
-            g2.drawString(v.id, -10, -8);
+            g2.drawString(id, -10, -8);
 
             g2.setTransform(old);
         }
+
+        // 4. SELECTION
+        drawSelection(g2, screen, vehicles);
+    }
+
+    // Rings the selected node or vehicle and prints its details in the top-left corner (in screen space).
+    private void drawSelection(Graphics2D g2, AffineTransform screen, VehicleSnapshot vehicles) {
+        int v = selectedVehicle == null ? -1 : vehicles.indexOf(selectedVehicle, selectedGeneration);
+        if (v >= 0 && vehicles.next[v] == null) v = -1;
+        if (v < 0) selectedVehicle = null; // The vehicle has left the simulation
+        Node n = selectedNode;
+        if (v < 0 && n == null) return;
+
+        String info;
+        g2.setColor(Color.WHITE);
+        g2.setStroke(new BasicStroke(2));
+        if (v >= 0) {
+            int x = (int) vehicles.x(v), y = (int) vehicles.y(v);
+            g2.drawOval(x - 16, y - 16, 32, 32);
+            info = vehicles.ids[v] + " (" + vehicles.types[v] + ")  " + vehicles.current[v].name + " -> " + vehicles.next[v].name
+                    + "  destination: " + vehicles.destinations[v].name + (vehicles.returning[v] ? "  returning" : "");
+        } else {
+            g2.drawOval(n.x - 18, n.y - 18, 36, 36);
+            info = n.name + " (" + n.type + ", id " + n.id + ")  at " + n.x + ", " + n.y;
+        }
+
+        g2.setTransform(screen);
+        g2.setFont(new Font("SansSerif", Font.BOLD, 12));
+        g2.drawString(info, 10, 20);
+    }
+
+    // Map area to fit on screen as {minX, minY, maxX, maxY}. At least the 1250x900 canvas of the built-in city,
+    // grown to cover imported or generated maps. Cached per compiled graph.
+    private double[] virtualArea() {
+        CsrGraph csr = graph.csr;
+        if (csr != areaSource) {
+            double minX = 0, minY = 0, maxX = 1250, maxY = 900;
+            for (int i = 0; i < csr.nodeCount; i++) {
+                minX = Math.min(minX, csr.xs[i] - 50);
+                minY = Math.min(minY, csr.ys[i] - 50);
+                maxX = Math.max(maxX, csr.xs[i] + 100);
+                maxY = Math.max(maxY, csr.ys[i] + 60);
+            }
+            area = new double[] {minX, minY, maxX, maxY};
+            areaSource = csr;
+        }
+        return area;
     }
 
     // Helper to draw the full path line for a vehicle
-    private void drawPath(Graphics2D g2, Vehicle v, double offset) {
-        if (v.path != null && v.path.size() > 1) {
-            for (int i = 0; i < v.path.size() - 1; i++) {
-                Node n1 = v.path.get(i);
-                Node n2 = v.path.get(i+1);
+    private void drawPath(Graphics2D g2, CompiledRoute route, double offset) {
+        if (route != null && route.length() > 1) {
+            for (int i = 0; i < route.length() - 1; i++) {
+                Node n1 = route.node(i);
+                Node n2 = route.node(i+1);
                 double[] offsets = calculateOffset(n1.x, n1.y, n2.x, n2.y, offset);
                 g2.drawLine((int)(n1.x + offsets[0]), (int)(n1.y + offsets[1]),
                         (int)(n2.x + offsets[0]), (int)(n2.y + offsets[1]));
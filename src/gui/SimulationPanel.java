@@ -14,11 +14,13 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import models.*;
 import simulation.SimulationEngine;
+import simulation.SimulationListener;
 
 // The main container for the simulation view. It holds the MapPanel (center) and the ControlPanel (bottom). Dynamically updates the control panel based on the user's role.
-public class SimulationPanel extends JPanel {
+public class SimulationPanel extends JPanel implements SimulationListener {
     public CityGraph graph;
     private SimulationEngine engine;
 
@@ -30,6 +32,9 @@ public class SimulationPanel extends JPanel {
 
     private Runnable onLogout;
 
+    private static final String[] SPEED_LABELS = {"1x", "10x", "100x", "Max"};
+    private static final double[] SPEEDS = {1, 10, 100, 0}; // 0 = as fast as possible
+
     public SimulationPanel(CityGraph graph, SimulationEngine engine, Runnable onLogout) {
         this.graph = graph;
         this.engine = engine;
@@ -50,6 +55,21 @@ public class SimulationPanel extends JPanel {
         statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
     }
 
+    // Time-warp selector: simulated seconds per real second, or as fast as the engine can go.
+    private void addSpeedBox(GridBagConstraints gbc) {
+        JComboBox<String> speedBox = new JComboBox<>(SPEED_LABELS);
+        double speed = engine.getSpeed();
+        for (int i = 0; i < SPEEDS.length; i++) {
+            if (Math.abs(SPEEDS[i] - speed) < 1e-9) speedBox.setSelectedIndex(i);
+        }
+        speedBox.addActionListener(e -> engine.setSpeed(SPEEDS[speedBox.getSelectedIndex()]));
+        JLabel lblSpeed = new JLabel("Speed:");
+        lblSpeed.setForeground(Color.WHITE);
+        controlPanel.add(Box.createHorizontalStrut(20), gbc);
+        controlPanel.add(lblSpeed, gbc);
+        controlPanel.add(speedBox, gbc);
+    }
+
     private void addLogoutButton(GridBagConstraints gbc) {
         JButton logoutBtn = new JButton("Logout");
         logoutBtn.setBackground(Color.DARK_GRAY);
@@ -61,6 +81,23 @@ public class SimulationPanel extends JPanel {
         controlPanel.add(logoutBtn, gbc);
     }
 
+    // Nothing to do per tick: at a high speed many ticks run per frame, and the view only repaints once per frame.
+    @Override
+    public void tickCompleted(SimulationEngine engine) {
+    }
+
+    // Engine callback: repaint() only queues a paint request, so it is safe from the simulation thread.
+    @Override
+    public void frameCompleted(SimulationEngine engine) {
+        repaint();
+    }
+
+    // Engine callback, possibly off the EDT (a replayed or restored user change), so the controls are rebuilt on the EDT.
+    @Override
+    public void userChanged(String role, String id) {
+        SwingUtilities.invokeLater(() -> enableControls(role));
+    }
+
     // Configures the control panel UI based on the logged-in user role. Also informs the MapPanel of the role change to adjust rendering filters.
     public void enableControls(String role) {
         controlPanel.setVisible(true);
@@ -116,6 +153,7 @@ public class SimulationPanel extends JPanel {
         controlPanel.add(endBox, gbc);
         controlPanel.add(goBtn, gbc);
         controlPanel.add(statusLabel, gbc);
+        addSpeedBox(gbc);
         addLogoutButton(gbc);
     }
 
@@ -134,6 +172,7 @@ public class SimulationPanel extends JPanel {
 
         controlPanel.add(title, gbc);
         controlPanel.add(info, gbc);
+        addSpeedBox(gbc);
         addLogoutButton(gbc);
     }
 
@@ -176,6 +215,7 @@ public class SimulationPanel extends JPanel {
         controlPanel.add(policeBtn, gbc);
         controlPanel.add(fireBtn, gbc);
         controlPanel.add(statusLabel, gbc);
+        addSpeedBox(gbc);
         addLogoutButton(gbc);
     }
 
@@ -188,6 +228,7 @@ public class SimulationPanel extends JPanel {
         modeLabel.setFont(new Font("Arial", Font.BOLD, 16));
         modeLabel.setForeground(Color.lightGray);
         controlPanel.add(modeLabel, gbc);
+        addSpeedBox(gbc);
         addLogoutButton(gbc);
     }
 
@@ -6,6 +6,7 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -15,6 +16,7 @@ import javax.swing.JPanel;
 import javax.swing.JPasswordField;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
+import maps.MapSources;
 import models.*;
 import simulation.SimulationEngine;
 
@@ -31,7 +33,7 @@ public class SmartCityTraffic extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         // Start the System
-        cityGraph = new CityGraph();
+        cityGraph = loadCity();
         engine = new SimulationEngine(cityGraph);
 
         // Setup main container with CardLayout to switch between views
@@ -52,11 +54,21 @@ public class SmartCityTraffic extends JFrame {
         add(mainContainer);
 
         // Link engine to UI and prepare initial data
-        engine.setPanelToRefresh(simPanel);
+        engine.addListener(simPanel);
         engine.initializeTraffic(); // 
         engine.start(); // 
     }
 
+    // Loads the map selected with -Dtraffic.map (file or generator spec), falling back to the built-in city.
+    private CityGraph loadCity() {
+        try {
+            return MapSources.fromSystemProperty();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not load map (" + e.getMessage() + "), using the built-in city");
+            return new CityGraph();
+        }
+    }
+
     private JPanel createLoginPanel() {
         JPanel panel = new JPanel(new GridBagLayout());
         panel.setBackground(new Color(80, 84, 88));
@@ -0,0 +1,62 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import maps.MapSources;
+import models.CityGraph;
+import models.CsrGraph;
+import models.VehicleType;
+import simulation.Ensemble;
+import simulation.SimulationEngine;
+
+// Runs a Monte Carlo ensemble of headless replicas and prints queue and trip time estimates with 95% confidence intervals.
+// Usage: java -cp bin main.EnsembleMain <replicas> <ticks> [map spec] [threads, default = available processors]
+// -Dtraffic.seed=<n> is the seed of replica 0 (replica i uses n + i), -Dtraffic.ensemble.csv=<file> writes the estimate for every road.
+// Other traffic.* settings (demand, routing, events) apply to every replica; input logs and checkpoints are per run and not supported.
+public class EnsembleMain {
+    static final int TOP_ROADS = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: EnsembleMain <replicas> <ticks> [map spec] [threads]");
+            System.exit(2);
+        }
+        for (String unsupported : new String[] {"traffic.record", "traffic.replay", "traffic.restore", "traffic.checkpoint"}) {
+            if (System.getProperty(unsupported) != null) {
+                System.err.println("-D" + unsupported + " cannot be used with an ensemble");
+                System.exit(2);
+            }
+        }
+        int replicas = Integer.parseInt(args[0]);
+        int ticks = Integer.parseInt(args[1]);
+        CityGraph city = MapSources.load(args.length > 2 ? args[2] : "builtin");
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = Long.getLong("traffic.seed", 1);
+
+        Ensemble.Result r = new Ensemble(city, replicas, seed, ticks, threads).run();
+
+        System.out.printf("%d replicas x %d ticks (%.1f s simulated) on %d threads in %.2f s: %.2f cores busy%n",
+                replicas, ticks, ticks * SimulationEngine.TICK_SECONDS, r.threads, r.seconds, r.speedup());
+        System.out.printf("memory: %.1f MB shared topology, %.1f MB live per replica", r.topologyBytes / 1e6, r.replicaBytes / 1e6);
+        long allocated = 0;
+        for (Ensemble.Replica replica : r.replicas) allocated += Math.max(0, replica.allocatedBytes);
+        System.out.printf(", %.1f MB allocated per replica run%n", allocated / 1e6 / replicas);
+        System.out.printf("trips completed per replica: %s%n", r.trips());
+        System.out.printf("mean trip time: %s s%n", r.tripSeconds());
+        for (VehicleType type : VehicleType.values()) {
+            Ensemble.Interval t = r.tripSeconds(type);
+            if (t.n > 0) System.out.printf("  %-11s %s s (%d replicas)%n", type, t, t.n);
+        }
+
+        CsrGraph g = city.csr;
+        System.out.println("longest mean queues (vehicles, 95% CI, longest seen):");
+        for (int e : r.busiestEdges(TOP_ROADS)) {
+            System.out.printf("  %s -> %s: %s, max %d%n", g.nodes[g.sources[e]], g.nodes[g.targets[e]], r.queue(e), r.maxQueue(e));
+        }
+        String csv = System.getProperty("traffic.ensemble.csv");
+        if (csv != null) {
+            r.writeCsv(Paths.get(csv), g);
+            System.out.println("per-road estimates written to " + csv);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import maps.MapSources;
+import models.CityGraph;
+import simulation.Checkpoint;
+import simulation.SimulationEngine;
+
+// Runs the simulation without a display, for batch runs and benchmarks.
+// Usage: java -cp bin main.HeadlessMain [ticks] [map spec] [ticks per second, 0 = as fast as possible]
+// With a rate of 0 the ticks are driven directly through step(); otherwise the engine's own run loop paces them.
+// -Dtraffic.seed=<n> fixes the random source, -Dtraffic.record=<file> logs the inputs and -Dtraffic.replay=<file> plays a log back
+// (the live initializeTraffic() call is then ignored in favour of the logged one).
+// -Dtraffic.demand=<file> replaces the default background traffic with an OD demand model (see DemandModel).
+// -Dtraffic.restore=<file> continues from a checkpoint instead of starting new traffic, and -Dtraffic.checkpoint=<file> saves one
+// after the last tick.
+public class HeadlessMain {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        CityGraph city = MapSources.load(args.length > 1 ? args[1] : "builtin");
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        SimulationEngine engine = new SimulationEngine(city);
+        String restore = System.getProperty("traffic.restore");
+        if (restore != null) {
+            long t0 = System.nanoTime();
+            Checkpoint checkpoint = Checkpoint.read(Paths.get(restore));
+            engine.restore(checkpoint);
+            System.out.printf("restored %d vehicles at tick %d from %s in %.1f ms%n",
+                    checkpoint.getVehicleCount(), checkpoint.getTickCount(), restore, (System.nanoTime() - t0) / 1e6);
+        } else {
+            engine.initializeTraffic();
+        }
+
+        long started = System.nanoTime();
+        if (rate <= 0) {
+            engine.step(ticks * SimulationEngine.TICK_SECONDS);
+        } else {
+            CountDownLatch done = new CountDownLatch(ticks);
+            engine.addListener(e -> done.countDown());
+            engine.setTargetTicksPerSecond(rate);
+            engine.start();
+            done.await();
+            engine.stop();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf("%d ticks (%.1f s simulated) in %.2f s: %.0f ticks/s, %d vehicles on the road%n",
+                engine.getTickCount(), engine.getSimulationTime(), seconds, ticks / seconds, engine.vehicles.size());
+        System.out.printf("seed %d%s%n", engine.getSeed(), engine.isReplaying() ? " (replayed input log)" : "");
+        if (rate > 0) System.out.printf("%d frames, %d tick overruns%n", engine.getFrameCount(), engine.getTickOverruns());
+        if (engine.isEventDriven()) System.out.printf("%d events processed%n", engine.getEventsProcessed());
+        if (engine.getDemand() != null) System.out.printf("%d background trips generated%n", engine.getDemand().getTripsGenerated());
+        String save = System.getProperty("traffic.checkpoint");
+        if (save != null) {
+            long t0 = System.nanoTime();
+            Checkpoint checkpoint = engine.checkpoint();
+            long t1 = System.nanoTime();
+            checkpoint.write(Paths.get(save));
+            System.out.printf("checkpoint of %d vehicles at tick %d: captured in %.1f ms, written to %s in %.1f ms%n",
+                    checkpoint.getVehicleCount(), checkpoint.getTickCount(), (t1 - t0) / 1e6, save, (System.nanoTime() - t1) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import maps.MapSources;
+import models.CityGraph;
+import simulation.ShardNode;
+import simulation.SimulationEngine;
+
+// Runs the simulation split over several processes, one district (shard) each, in lockstep over local TCP connections.
+// Usage: java -cp bin main.ShardMain launch <shards> <ticks> [map spec]    starts all shards on this machine and waits for them
+//        java -cp bin main.ShardMain <shard> <shards> <ticks> [map spec]   runs one shard (e.g. to place them by hand)
+// -Dtraffic.shardPort=<port> sets the port of shard 0 (default 47300); shard i uses port + i. Shard 0 creates the traffic
+// (initial trips, bus lines, background traffic); every shard prints its tick time and migration counts when it is done.
+public class ShardMain {
+    static final int DEFAULT_PORT = 47300;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: ShardMain launch <shards> <ticks> [map spec] | ShardMain <shard> <shards> <ticks> [map spec]");
+            System.exit(2);
+        }
+        String map = args.length > 3 ? args[3] : "builtin";
+        if (args[0].equals("launch")) {
+            System.exit(launch(Integer.parseInt(args[1]), Integer.parseInt(args[2]), map));
+        }
+        runShard(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), map);
+    }
+
+    private static void runShard(int shard, int shards, int ticks, String map) throws IOException {
+        CityGraph city = MapSources.load(map);
+        SimulationEngine engine = new SimulationEngine(city);
+        try (ShardNode node = new ShardNode(engine, shard, shards, Integer.getInteger("traffic.shardPort", DEFAULT_PORT))) {
+            node.connect(30_000);
+            if (shard == 0) engine.initializeTraffic();
+            long started = System.nanoTime();
+            for (int t = 0; t < ticks; t++) node.step();
+            node.finish();
+            double seconds = (System.nanoTime() - started) / 1e9;
+            // One write per line, so the reports of shards sharing a console do not interleave
+            System.out.print(String.format("%s; %.2f s wall, %.0f ticks/s%n", node.report(), seconds, ticks / seconds));
+            System.out.flush();
+        }
+    }
+
+    // Starts one JVM per shard with this JVM's class path and traffic.* settings, and returns the first non-zero exit code.
+    private static int launch(int shards, int ticks, String map) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            for (String name : System.getProperties().stringPropertyNames()) {
+                if (name.startsWith("traffic.")) command.add("-D" + name + "=" + System.getProperty(name));
+            }
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(ShardMain.class.getName());
+            command.add(String.valueOf(shard));
+            command.add(String.valueOf(shards));
+            command.add(String.valueOf(ticks));
+            command.add(map);
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        int status = 0;
+        for (Process p : processes) {
+            int code = p.waitFor();
+            if (status == 0) status = code;
+        }
+        return status;
+    }
+}
@@ -0,0 +1,172 @@
+package maps;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import models.CityGraph;
+import models.NodeType;
+
+// Generates parametric cities for scale testing. Intersections (IDs 1..N) are laid out as a grid, a radial ring city or a random planar
+// network; apartments, parking lots and emergency services are then attached to random intersections by density, like in the
+// built-in map. All roads are two-way and weighted by pixel length at the built-in map's scale (100 px = 1.0). Same seed, same city.
+public class CityGenerator {
+    public enum Layout { GRID, RADIAL, RANDOM_PLANAR }
+
+    private static final int SPACING = 150;             // Pixels between neighbouring intersections
+    private static final double PIXELS_PER_UNIT = 100.0;
+
+    private final Layout layout;
+    private final int intersections;
+    private final long seed;
+    private double apartmentDensity = 0.8;  // Apartments per intersection
+    private double parkingDensity = 0.15;   // Parking lots per intersection
+    private double serviceDensity = 0.02;   // Police stations, hospitals and fire stations per intersection (each)
+
+    public CityGenerator(Layout layout, int intersections, long seed) {
+        if (intersections < 2) throw new IllegalArgumentException("A city needs at least 2 intersections");
+        this.layout = layout;
+        this.intersections = intersections;
+        this.seed = seed;
+    }
+
+    public CityGenerator apartmentDensity(double d) { this.apartmentDensity = d; return this; }
+    public CityGenerator parkingDensity(double d) { this.parkingDensity = d; return this; }
+    public CityGenerator serviceDensity(double d) { this.serviceDensity = d; return this; }
+
+    public CityGraph generate() {
+        Random random = new Random(seed);
+        CityGraph graph = CityGraph.empty();
+        int[] xs = new int[intersections];
+        int[] ys = new int[intersections];
+
+        switch (layout) {
+            case GRID: gridLayout(graph, xs, ys, 0, random); break;
+            case RADIAL: radialLayout(graph, xs, ys); break;
+            case RANDOM_PLANAR: gridLayout(graph, xs, ys, SPACING / 3, random); break;
+        }
+
+        int nextId = intersections + 1;
+        nextId = attach(graph, xs, ys, random, nextId, NodeType.APARTMENT, "APT", count(apartmentDensity, 1));
+        nextId = attach(graph, xs, ys, random, nextId, NodeType.PARKING, "P", count(parkingDensity, 1));
+        nextId = attach(graph, xs, ys, random, nextId, NodeType.POLICE, "POLICE", count(serviceDensity, 1));
+        nextId = attach(graph, xs, ys, random, nextId, NodeType.HOSPITAL, "HOSP", count(serviceDensity, 1));
+        attach(graph, xs, ys, random, nextId, NodeType.FIRE_STATION, "FIRE", count(serviceDensity, 1));
+
+        graph.compile();
+        return graph;
+    }
+
+    private int count(double density, int minimum) {
+        return Math.max(minimum, (int) Math.round(density * intersections));
+    }
+
+    // Square grid of intersections. With jitter > 0 the points are displaced inside their cells, some cells get one diagonal and
+    // redundant roads are dropped at random. A spanning tree is always kept, so the network stays connected and planar.
+    private void gridLayout(CityGraph graph, int[] xs, int[] ys, int jitter, Random random) {
+        int side = (int) Math.ceil(Math.sqrt(intersections));
+        for (int i = 0; i < intersections; i++) {
+            int col = i % side, row = i / side;
+            xs[i] = SPACING + col * SPACING + (jitter > 0 ? random.nextInt(2 * jitter + 1) - jitter : 0);
+            ys[i] = SPACING + row * SPACING + (jitter > 0 ? random.nextInt(2 * jitter + 1) - jitter : 0);
+            graph.addNode(i + 1, "INTR" + (i + 1), NodeType.INTERSECTION, xs[i], ys[i]);
+        }
+
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = 0; i < intersections; i++) {
+            int col = i % side;
+            if (col + 1 < side && i + 1 < intersections) candidates.add(new int[] {i, i + 1});
+            if (i + side < intersections) candidates.add(new int[] {i, i + side});
+            if (jitter > 0 && col + 1 < side && i + side + 1 < intersections && random.nextDouble() < 0.3) {
+                candidates.add(random.nextBoolean() ? new int[] {i, i + side + 1} : new int[] {i + 1, i + side});
+            }
+        }
+        if (jitter == 0) {
+            for (int[] c : candidates) road(graph, c[0], c[1], xs, ys);
+            return;
+        }
+
+        // Kruskal-style: roads joining two components are always built, the rest with probability 0.8
+        for (int i = candidates.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int[] tmp = candidates.get(i); candidates.set(i, candidates.get(j)); candidates.set(j, tmp);
+        }
+        int[] parent = new int[intersections];
+        for (int i = 0; i < intersections; i++) parent[i] = i;
+        List<int[]> optional = new ArrayList<>();
+        for (int[] c : candidates) {
+            int a = find(parent, c[0]), b = find(parent, c[1]);
+            if (a != b) {
+                parent[a] = b;
+                road(graph, c[0], c[1], xs, ys);
+            } else {
+                optional.add(c);
+            }
+        }
+        for (int[] c : optional) {
+            if (random.nextDouble() < 0.8) road(graph, c[0], c[1], xs, ys);
+        }
+    }
+
+    // Concentric rings around a centre: ring k holds 6k intersections, joined around the ring and by spokes to the nearest
+    // intersection (by angle) of the ring inside it.
+    private void radialLayout(CityGraph graph, int[] xs, int[] ys) {
+        int rings = 0;
+        for (int placed = 1; placed < intersections; placed += 6 * rings) rings++;
+        int centre = SPACING + rings * SPACING;
+
+        xs[0] = centre;
+        ys[0] = centre;
+        graph.addNode(1, "INTR1", NodeType.INTERSECTION, centre, centre);
+
+        int ringStart = 1, previousStart = 0, previousCount = 1;
+        for (int k = 1; ringStart < intersections; k++) {
+            int count = Math.min(6 * k, intersections - ringStart);
+            for (int j = 0; j < count; j++) {
+                int i = ringStart + j;
+                double angle = 2 * Math.PI * j / (6 * k);
+                xs[i] = centre + (int) Math.round(k * SPACING * Math.cos(angle));
+                ys[i] = centre + (int) Math.round(k * SPACING * Math.sin(angle));
+                graph.addNode(i + 1, "INTR" + (i + 1), NodeType.INTERSECTION, xs[i], ys[i]);
+
+                if (j > 0) road(graph, i - 1, i, xs, ys);
+                int inner = previousStart + (int) ((long) j * previousCount / (6 * k));
+                road(graph, inner, i, xs, ys);
+            }
+            if (count == 6 * k && count > 2) road(graph, ringStart + count - 1, ringStart, xs, ys); // Close the ring
+            previousStart = ringStart;
+            previousCount = count;
+            ringStart += count;
+        }
+    }
+
+    // Adds 'count' buildings next to random intersections, each linked by a short two-way driveway.
+    private int attach(CityGraph graph, int[] xs, int[] ys, Random random, int nextId, NodeType type, String prefix, int count) {
+        for (int k = 1; k <= count; k++) {
+            int host = random.nextInt(intersections);
+            double angle = random.nextDouble() * 2 * Math.PI;
+            int x = xs[host] + (int) Math.round(40 * Math.cos(angle));
+            int y = ys[host] + (int) Math.round(40 * Math.sin(angle));
+            String name = (type == NodeType.APARTMENT || type == NodeType.PARKING || k > 1) ? prefix + k : prefix;
+            graph.addNode(nextId, name, type, x, y);
+            graph.addEdge(nextId, host + 1, 0.5);
+            graph.addEdge(host + 1, nextId, 0.5);
+            nextId++;
+        }
+        return nextId;
+    }
+
+    private static void road(CityGraph graph, int a, int b, int[] xs, int[] ys) {
+        double dx = xs[a] - xs[b], dy = ys[a] - ys[b];
+        double weight = Math.max(0.1, Math.sqrt(dx * dx + dy * dy) / PIXELS_PER_UNIT);
+        graph.addEdge(a + 1, b + 1, weight);
+        graph.addEdge(b + 1, a + 1, weight);
+    }
+
+    private static int find(int[] parent, int v) {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+}
@@ -0,0 +1,101 @@
+package maps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import models.CityGraph;
+import models.CityGraphFile;
+import models.CsrGraph;
+import models.Node;
+import models.NodeType;
+
+// Imports a street network from a plain text file and compiles it into the binary map format.
+// One record per line, comma separated; blank lines and lines starting with '#' are ignored:
+//   node,<id>,<name>,<TYPE>,<x>,<y>      TYPE is a NodeType name, x/y are GUI coordinates
+//   edge,<from>,<to>,<weight>            one-way road
+//   road,<a>,<b>,<weight>                two-way road (two edges)
+// Usage: java -cp bin maps.CsvMapImporter city.csv city.map
+public final class CsvMapImporter {
+
+    private CsvMapImporter() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java -cp bin maps.CsvMapImporter <input.csv> <output.map>");
+            System.exit(2);
+        }
+        long started = System.nanoTime();
+        CityGraph graph = read(Paths.get(args[0]));
+        CityGraphFile.write(graph, Paths.get(args[1]));
+        System.out.printf("Compiled %d nodes and %d edges into %s in %.1f ms%n",
+                graph.csr.nodeCount, graph.csr.edgeCount, args[1], (System.nanoTime() - started) / 1e6);
+    }
+
+    public static CityGraph read(Path file) throws IOException {
+        CityGraph graph = CityGraph.empty();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                try {
+                    switch (f[0].trim().toLowerCase()) {
+                        case "node":
+                            expect(f, 6);
+                            graph.addNode(parseInt(f[1]), f[2].trim(), NodeType.valueOf(f[3].trim().toUpperCase()), parseInt(f[4]), parseInt(f[5]));
+                            break;
+                        case "edge":
+                            expect(f, 4);
+                            addEdge(graph, parseInt(f[1]), parseInt(f[2]), Double.parseDouble(f[3].trim()));
+                            break;
+                        case "road":
+                            expect(f, 4);
+                            addEdge(graph, parseInt(f[1]), parseInt(f[2]), Double.parseDouble(f[3].trim()));
+                            addEdge(graph, parseInt(f[2]), parseInt(f[1]), Double.parseDouble(f[3].trim()));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown record type '" + f[0] + "'");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(file + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        graph.compile();
+        return graph;
+    }
+
+    // Writes a graph in the text format (e.g. to export the built-in city as a starting point for editing).
+    public static void write(CityGraph graph, Path file) throws IOException {
+        CsrGraph g = graph.csr;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("# kind,id,name,type,x,y | kind,from,to,weight\n");
+            for (Node n : g.nodes) out.write("node," + n.id + "," + n.name + "," + n.type + "," + n.x + "," + n.y + "\n");
+            for (int e = 0; e < g.edgeCount; e++) {
+                out.write("edge," + g.nodes[g.sources[e]].id + "," + g.nodes[g.targets[e]].id + "," + g.baseWeights[e] + "\n");
+            }
+        }
+    }
+
+    private static void addEdge(CityGraph graph, int from, int to, double weight) {
+        if (!graph.nodes.containsKey(from) || !graph.nodes.containsKey(to)) {
+            throw new IllegalArgumentException("road " + from + " -> " + to + " references an unknown node");
+        }
+        graph.addEdge(from, to, weight);
+    }
+
+    private static void expect(String[] fields, int count) {
+        if (fields.length != count) throw new IllegalArgumentException("expected " + count + " fields, found " + fields.length);
+    }
+
+    private static int parseInt(String s) {
+        return Integer.parseInt(s.trim());
+    }
+}
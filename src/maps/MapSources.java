@@ -0,0 +1,35 @@
+package maps;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import models.CityGraph;
+
+// Resolves which city to simulate from a map specification, as given with -Dtraffic.map=...:
+//   (unset) or "builtin"                 the hand-built 18-intersection city
+//   generate:<grid|radial|random_planar>:<intersections>[:<seed>]
+//   <file>.csv                           text map (see CsvMapImporter)
+//   <file>                               binary map (see CityGraphFile)
+public final class MapSources {
+    public static final String PROPERTY = "traffic.map";
+
+    private MapSources() {}
+
+    public static CityGraph fromSystemProperty() throws IOException {
+        return load(System.getProperty(PROPERTY, "builtin"));
+    }
+
+    public static CityGraph load(String spec) throws IOException {
+        spec = spec.trim();
+        if (spec.isEmpty() || spec.equalsIgnoreCase("builtin")) return new CityGraph();
+        if (spec.startsWith("generate:")) {
+            String[] parts = spec.split(":");
+            if (parts.length < 3) throw new IllegalArgumentException("Expected generate:<layout>:<intersections>[:<seed>], got " + spec);
+            CityGenerator.Layout layout = CityGenerator.Layout.valueOf(parts[1].toUpperCase());
+            int intersections = Integer.parseInt(parts[2]);
+            long seed = parts.length > 3 ? Long.parseLong(parts[3]) : 1L;
+            return new CityGenerator(layout, intersections, seed).generate();
+        }
+        if (spec.toLowerCase().endsWith(".csv")) return CsvMapImporter.read(Paths.get(spec));
+        return CityGraph.load(Paths.get(spec));
+    }
+}
@@ -1,5 +1,7 @@
 package models;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -9,27 +11,83 @@ import java.util.Map;
 public class CityGraph {
 	public Map<Integer, Node> nodes = new HashMap<>(); // Maps node IDs to Node objects for quick lookup
     public Map<Integer, List<Edge>> adjList = new HashMap<>(); // Adjacency list representing road connections: Node ID -> List of outgoing Edges
+    public CsrGraph csr; // Compact int-indexed view used by routing, the engine and the renderer. Null while the maps are being edited.
 
     public CityGraph() {
-        initializeNodes();
-        initializeConnections();
+        this(true);
+    }
+
+    private CityGraph(boolean builtInMap) {
+        if (builtInMap) {
+            initializeNodes();
+            initializeConnections();
+        }
+        compile();
+    }
+
+    // Creates a graph without the built-in city, to be filled with addNode/addEdge (importers, generators) and then compile()d.
+    public static CityGraph empty() {
+        return new CityGraph(false);
+    }
+
+    // Loads a graph from a binary map file (see CityGraphFile), memory-mapping it instead of parsing text.
+    public static CityGraph load(Path file) throws IOException {
+        return CityGraphFile.read(file);
+    }
+
+    // (Re)builds the compact CSR view from the node/adjacency maps. Must be called after the topology changes.
+    public void compile() {
+        csr = new CsrGraph(nodes, adjList);
     }
     
+    // An independent copy for another engine on the same map (e.g. one replica of an ensemble). Nodes and roads are new objects,
+    // since they carry the traffic lights and queues a run changes, but the compiled CSR arrays are shared with this graph.
+    public CityGraph replicate() {
+        if (csr == null) throw new IllegalStateException("compile() the graph before replicating it");
+        CityGraph copy = new CityGraph(false);
+        Node[] nodes = new Node[csr.nodeCount];
+        for (int i = 0; i < nodes.length; i++) {
+            Node n = csr.nodes[i];
+            nodes[i] = new Node(n.id, n.name, n.type, n.x, n.y);
+            copy.nodes.put(n.id, nodes[i]);
+            copy.adjList.put(n.id, new ArrayList<>(csr.offsets[i + 1] - csr.offsets[i]));
+        }
+        Edge[] edges = new Edge[csr.edgeCount];
+        for (int e = 0; e < edges.length; e++) {
+            edges[e] = new Edge(nodes[csr.targets[e]], csr.baseWeights[e]);
+            copy.adjList.get(nodes[csr.sources[e]].id).add(edges[e]);
+        }
+        copy.csr = new CsrGraph(csr, nodes, edges);
+        return copy;
+    }
+
     // Creates a node.
-    private void addNode(int id, String name, NodeType type, int x, int y) {
+    public void addNode(int id, String name, NodeType type, int x, int y) {
         nodes.put(id, new Node(id, name, type, x, y));
         adjList.put(id, new ArrayList<>());
+        csr = null;
     }
 
     // Creates a directed edge (road) between two nodes with a specific base weight (distance).
-    private void addEdge(int from, int to, double w) {
+    public void addEdge(int from, int to, double w) {
         if (nodes.containsKey(from) && nodes.containsKey(to)) {
             adjList.get(from).add(new Edge(nodes.get(to), w));
+            csr = null;
+        }
+    }
+
+    // Returns all nodes of one type in ascending ID order (e.g. every APARTMENT as a trip endpoint).
+    public List<Node> nodesOfType(NodeType type) {
+        List<Node> result = new ArrayList<>();
+        for (Node n : csr.nodes) {
+            if (n.type == type) result.add(n);
         }
+        return result;
     }
 
     // Retrieves the edge object connecting two specific nodes. Useful for accessing queue data on a specific road segment.
     public Edge getEdge(int fromId, int toId) {
+        if (csr != null) return csr.edgeBetween(fromId, toId); // O(1) lookup once compiled
         if (!adjList.containsKey(fromId)) return null;
         for (Edge e : adjList.get(fromId)) {
             if (e.target.id == toId) {
@@ -0,0 +1,154 @@
+package models;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compact binary map format. The file is a CSR dump of the graph, so loading is a memory-mapped bulk copy instead of text parsing.
+// Layout (little endian):
+//   header : int magic, int version, int nodeCount, int edgeCount, int nameBytes
+//   nodes  : int[nodeCount] ids, int[nodeCount] xs, int[nodeCount] ys, byte[nodeCount] types (NodeType ordinal), padded to 4 bytes
+//   roads  : int[nodeCount + 1] offsets, int[edgeCount] targets (dense index), double[edgeCount] base weights
+//   names  : int[nodeCount + 1] offsets into the following UTF-8 bytes
+public final class CityGraphFile {
+    static final int MAGIC = 0x4D544353; // "SCTM"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+
+    private CityGraphFile() {}
+
+    public static void write(CityGraph graph, Path file) throws IOException {
+        CsrGraph g = graph.csr != null ? graph.csr : new CsrGraph(graph.nodes, graph.adjList);
+        int n = g.nodeCount, m = g.edgeCount;
+
+        byte[][] names = new byte[n][];
+        int nameBytes = 0;
+        for (int i = 0; i < n; i++) {
+            names[i] = g.nodes[i].name.getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[i].length;
+        }
+
+        long size = HEADER_BYTES + 13L * n + pad4(n) + 4L * (n + 1) + 4L * m + 8L * m + 4L * (n + 1) + nameBytes;
+        if (size > Integer.MAX_VALUE) throw new IOException("Map too large for a single mapped region: " + size + " bytes");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).putInt(nameBytes);
+            for (int i = 0; i < n; i++) out.putInt(g.nodes[i].id);
+            for (int i = 0; i < n; i++) out.putInt(g.xs[i]);
+            for (int i = 0; i < n; i++) out.putInt(g.ys[i]);
+            for (int i = 0; i < n; i++) out.put((byte) g.nodes[i].type.ordinal());
+            for (int i = 0; i < pad4(n); i++) out.put((byte) 0);
+            for (int i = 0; i <= n; i++) out.putInt(g.offsets[i]);
+            for (int e = 0; e < m; e++) out.putInt(g.targets[e]);
+            for (int e = 0; e < m; e++) out.putDouble(g.baseWeights[e]);
+            int offset = 0;
+            for (int i = 0; i < n; i++) {
+                out.putInt(offset);
+                offset += names[i].length;
+            }
+            out.putInt(offset);
+            for (byte[] name : names) out.put(name);
+            out.force();
+        }
+    }
+
+    public static CityGraph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) throw new IOException("Not a city map file: " + file);
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (in.getInt() != MAGIC) throw new IOException("Not a city map file: " + file);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported map file version " + version + ": " + file);
+            int n = in.getInt(), m = in.getInt(), nameBytes = in.getInt();
+            if (n < 0 || m < 0 || nameBytes < 0
+                    || channel.size() != HEADER_BYTES + 13L * n + pad4(n) + 4L * (n + 1) + 12L * m + 4L * (n + 1) + nameBytes) {
+                throw new IOException("Corrupt map file (sizes do not match the header): " + file);
+            }
+
+            int[] ids = readInts(in, n);
+            int[] xs = readInts(in, n);
+            int[] ys = readInts(in, n);
+            byte[] types = new byte[n];
+            in.get(types);
+            in.position(in.position() + pad4(n));
+            int[] offsets = readInts(in, n + 1);
+            int[] targets = readInts(in, m);
+            double[] weights = new double[m];
+            in.asDoubleBuffer().get(weights);
+            in.position(in.position() + 8 * m);
+            int[] nameOffsets = readInts(in, n + 1);
+            byte[] nameBlob = new byte[nameBytes];
+            in.get(nameBlob);
+
+            validate(file, ids, types, offsets, targets, nameOffsets, m, nameBytes);
+
+            // The file is already in CSR order, so the compact view is built from these arrays directly; the node and adjacency
+            // maps are filled alongside it with the same Node and Edge objects.
+            NodeType[] typeValues = NodeType.values();
+            CityGraph graph = CityGraph.empty();
+            Node[] nodes = new Node[n];
+            for (int i = 0; i < n; i++) {
+                String name = new String(nameBlob, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8);
+                nodes[i] = new Node(ids[i], name, typeValues[types[i]], xs[i], ys[i]);
+                graph.nodes.put(ids[i], nodes[i]);
+            }
+            Edge[] edges = new Edge[m];
+            for (int i = 0; i < n; i++) {
+                List<Edge> out = new ArrayList<>(offsets[i + 1] - offsets[i]);
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                    edges[e] = new Edge(nodes[targets[e]], weights[e]);
+                    out.add(edges[e]);
+                }
+                graph.adjList.put(ids[i], out);
+            }
+            graph.csr = new CsrGraph(nodes, edges, offsets, targets, weights);
+            return graph;
+        }
+    }
+
+    // Rejects files whose arrays would index out of range or break the CSR layout, which the graph would otherwise trip over later.
+    private static void validate(Path file, int[] ids, byte[] types, int[] offsets, int[] targets, int[] nameOffsets, int m,
+                                 int nameBytes) throws IOException {
+        int n = ids.length;
+        for (int i = 0; i < n; i++) {
+            if (types[i] < 0 || types[i] >= NodeType.values().length) {
+                throw new IOException("Corrupt map file (node type " + types[i] + " of node " + ids[i] + "): " + file);
+            }
+            if (i > 0 && ids[i] <= ids[i - 1]) throw new IOException("Corrupt map file (node IDs not ascending): " + file);
+        }
+        if (offsets[0] != 0 || offsets[n] != m || nameOffsets[0] != 0 || nameOffsets[n] != nameBytes) {
+            throw new IOException("Corrupt map file (offsets do not span the arrays): " + file);
+        }
+        for (int i = 0; i < n; i++) {
+            if (offsets[i + 1] < offsets[i] || nameOffsets[i + 1] < nameOffsets[i]) {
+                throw new IOException("Corrupt map file (offsets not ascending): " + file);
+            }
+        }
+        for (int target : targets) {
+            if (target < 0 || target >= n) throw new IOException("Corrupt map file (road target " + target + "): " + file);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static int pad4(int bytes) {
+        return (4 - (bytes & 3)) & 3;
+    }
+}
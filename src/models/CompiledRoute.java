@@ -0,0 +1,53 @@
+package models;
+
+import java.util.AbstractList;
+import java.util.List;
+
+// A vehicle's route resolved once against the CsrGraph: the dense node indices it passes and the id of every road between them.
+// Routes are immutable and interned by a RouteTable, so every vehicle driving the same route shares one instance; a vehicle only
+// keeps its cursor (VehicleStore.pathIndex), and handing it to its next road is edges[cursor] instead of an adjacency lookup.
+public final class CompiledRoute {
+    public final int[] nodes;   // Dense node indices, first = start, last = destination
+    public final int[] edges;   // edges[i] = CSR id of the road nodes[i] -> nodes[i + 1], -1 if the map has no such road
+
+    private final CsrGraph graph;
+
+    // 'nodes' is taken over, not copied; the caller must not modify it afterwards.
+    CompiledRoute(CsrGraph graph, int[] nodes) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.edges = new int[Math.max(0, nodes.length - 1)];
+        for (int i = 0; i < edges.length; i++) edges[i] = graph.edgeId(nodes[i], nodes[i + 1]);
+    }
+
+    public int length() {
+        return nodes.length;
+    }
+
+    public Node node(int i) {
+        return graph.nodes[nodes[i]];
+    }
+
+    public Node first() {
+        return node(0);
+    }
+
+    public Node last() {
+        return node(nodes.length - 1);
+    }
+
+    // Read-only view as Node objects, e.g. for drawing.
+    public List<Node> asList() {
+        return new AbstractList<Node>() {
+            @Override
+            public Node get(int i) {
+                return node(i);
+            }
+
+            @Override
+            public int size() {
+                return nodes.length;
+            }
+        };
+    }
+}
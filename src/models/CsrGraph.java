@@ -0,0 +1,225 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Compressed-sparse-row (CSR) snapshot of the CityGraph topology. Nodes get dense indices 0..nodeCount-1 and roads get edge ids 0..edgeCount-1,
+// so routing and hop handoff work on primitive arrays instead of boxed map lookups. The Node/Edge objects are shared with the map view.
+public class CsrGraph {
+    public final int nodeCount;
+    public final int edgeCount;
+    public final Node[] nodes;          // Dense index -> Node
+    public final Edge[] edges;          // Edge id -> Edge (holds the live vehicle queue)
+    public final int[] offsets;         // Outgoing edge ids of node i are offsets[i] .. offsets[i + 1] - 1
+    public final int[] sources;         // Edge id -> source node index
+    public final int[] targets;         // Edge id -> target node index
+    public final double[] baseWeights;  // Edge id -> base distance
+    public final int[] inOffsets;       // Incoming edge ids of node i are inEdges[inOffsets[i]] .. inEdges[inOffsets[i + 1] - 1]
+    public final int[] inEdges;         // Edge ids grouped by target node (reverse graph)
+    public final int[] xs, ys;          // Dense index -> GUI coordinates
+
+    private final LongIntTable indexById;  // Node ID -> dense index
+    private final LongIntTable edgeByPair; // (source index, target index) -> edge id
+
+    // Builds the compact arrays from the map view. Node indices follow ascending node ID so the layout is stable between runs.
+    CsrGraph(Map<Integer, Node> nodeMap, Map<Integer, List<Edge>> adjList) {
+        List<Integer> ids = new ArrayList<>(nodeMap.keySet());
+        ids.sort(null);
+
+        nodeCount = ids.size();
+        nodes = new Node[nodeCount];
+        xs = new int[nodeCount];
+        ys = new int[nodeCount];
+        indexById = new LongIntTable(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Node n = nodeMap.get(ids.get(i));
+            n.index = i;
+            nodes[i] = n;
+            xs[i] = n.x;
+            ys[i] = n.y;
+            indexById.putIfAbsent(n.id, i);
+        }
+
+        int total = 0;
+        for (Node n : nodes) {
+            List<Edge> out = adjList.get(n.id);
+            if (out != null) total += out.size();
+        }
+        edgeCount = total;
+        edges = new Edge[edgeCount];
+        offsets = new int[nodeCount + 1];
+        sources = new int[edgeCount];
+        targets = new int[edgeCount];
+        baseWeights = new double[edgeCount];
+        edgeByPair = new LongIntTable(edgeCount);
+
+        int e = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            offsets[i] = e;
+            List<Edge> out = adjList.get(nodes[i].id);
+            if (out == null) continue;
+            for (Edge edge : out) {
+                edge.id = e;
+                edges[e] = edge;
+                sources[e] = i;
+                targets[e] = edge.target.index;
+                baseWeights[e] = edge.baseWeight;
+                edgeByPair.putIfAbsent(pairKey(i, targets[e]), e); // First road wins, matching the old linear scan
+                e++;
+            }
+        }
+        offsets[nodeCount] = e;
+
+        inOffsets = new int[nodeCount + 1];
+        inEdges = new int[edgeCount];
+        buildReverse(targets, inOffsets, inEdges);
+    }
+
+    // Builds the view straight from CSR arrays (e.g. those of a map file), taking them over instead of going through the
+    // node/adjacency maps. nodes must be in ascending ID order, and offsets and targets must be well formed (checked by the caller).
+    CsrGraph(Node[] nodes, Edge[] edges, int[] offsets, int[] targets, double[] baseWeights) {
+        nodeCount = nodes.length;
+        edgeCount = edges.length;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.baseWeights = baseWeights;
+        xs = new int[nodeCount];
+        ys = new int[nodeCount];
+        indexById = new LongIntTable(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Node n = nodes[i];
+            n.index = i;
+            xs[i] = n.x;
+            ys[i] = n.y;
+            indexById.putIfAbsent(n.id, i);
+        }
+
+        sources = new int[edgeCount];
+        edgeByPair = new LongIntTable(edgeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                edges[e].id = e;
+                sources[e] = i;
+                edgeByPair.putIfAbsent(pairKey(i, targets[e]), e);
+            }
+        }
+
+        inOffsets = new int[nodeCount + 1];
+        inEdges = new int[edgeCount];
+        buildReverse(targets, inOffsets, inEdges);
+    }
+
+    // Reverse adjacency (counting sort of edge ids by target) for backward searches
+    private static void buildReverse(int[] targets, int[] inOffsets, int[] inEdges) {
+        int nodeCount = inOffsets.length - 1;
+        for (int target : targets) inOffsets[target + 1]++;
+        for (int i = 0; i < nodeCount; i++) inOffsets[i + 1] += inOffsets[i];
+        int[] fill = Arrays.copyOf(inOffsets, nodeCount);
+        for (int e = 0; e < targets.length; e++) inEdges[fill[targets[e]]++] = e;
+    }
+
+    // A view of the same topology over another set of Node/Edge objects (one replica's lights and queues): the arrays and lookup
+    // tables are never written after construction, so they are shared instead of copied. nodes[i] and edges[e] must stand for
+    // the same node and road as in 'shared'.
+    CsrGraph(CsrGraph shared, Node[] nodes, Edge[] edges) {
+        this.nodeCount = shared.nodeCount;
+        this.edgeCount = shared.edgeCount;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.offsets = shared.offsets;
+        this.sources = shared.sources;
+        this.targets = shared.targets;
+        this.baseWeights = shared.baseWeights;
+        this.inOffsets = shared.inOffsets;
+        this.inEdges = shared.inEdges;
+        this.xs = shared.xs;
+        this.ys = shared.ys;
+        this.indexById = shared.indexById;
+        this.edgeByPair = shared.edgeByPair;
+        for (int i = 0; i < nodeCount; i++) nodes[i].index = i;
+        for (int e = 0; e < edgeCount; e++) edges[e].id = e;
+    }
+
+    // Approximate heap size of the shared arrays and lookup tables (not the Node/Edge objects).
+    public long topologyBytes() {
+        return 4L * (offsets.length + sources.length + targets.length + inOffsets.length + inEdges.length + xs.length + ys.length)
+                + 8L * baseWeights.length + indexById.bytes() + edgeByPair.bytes();
+    }
+
+    // Returns the dense index of a node ID, or -1 if the node does not exist.
+    public int indexOf(int nodeId) {
+        return indexById.get(nodeId);
+    }
+
+    // Returns the edge id connecting two dense node indices in O(1), or -1 if there is no such road.
+    public int edgeId(int fromIndex, int toIndex) {
+        return edgeByPair.get(pairKey(fromIndex, toIndex));
+    }
+
+    // Same as edgeId, but takes node IDs and returns the Edge object.
+    public Edge edgeBetween(int fromId, int toId) {
+        int from = indexOf(fromId);
+        int to = indexOf(toId);
+        if (from < 0 || to < 0) return null;
+        int e = edgeId(from, to);
+        return e < 0 ? null : edges[e];
+    }
+
+    // Dynamic routing cost of an edge (distance + congestion).
+    public double currentWeight(int edgeId) {
+        return edges[edgeId].getCurrentWeight();
+    }
+
+    private static long pairKey(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    // Minimal open-addressing hash table from long keys to int values (linear probing, no removal).
+    private static final class LongIntTable {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        LongIntTable(int expected) {
+            int capacity = 4;
+            while (capacity < expected * 2) capacity <<= 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void putIfAbsent(long key, int value) {
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) return;
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        int get(long key) {
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        long bytes() {
+            return 12L * keys.length;
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
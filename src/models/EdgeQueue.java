@@ -0,0 +1,117 @@
+package models;
+
+import java.util.Arrays;
+
+// Waiting line of a road: one FIFO ring buffer per vehicle priority (Emergency > Normal). A vehicle joins the tail of its priority's
+// ring and the head of the queue is the oldest vehicle of the highest non-empty priority, so enqueue, peek and head removal are O(1).
+// Every vehicle remembers its ticket (position in its ring), so one that leaves from the middle - a non-intersection hop, the end
+// of its path, a reset - is removed in O(1) as well and the hole is skipped when it reaches the head.
+// Writes happen under the engine lock by the one thread that owns the road in the current tick phase; size() can be read without it.
+public class EdgeQueue {
+    private static final int LANES = maxPriority();
+
+    private final Vehicle[][] rings = new Vehicle[LANES][];
+    private final long[] heads = new long[LANES]; // Ticket of the first slot still in use
+    private final long[] tails = new long[LANES]; // Ticket the next vehicle will get
+    private volatile int size = 0;
+
+    private static int maxPriority() {
+        int max = 1;
+        for (VehicleType t : VehicleType.values()) max = Math.max(max, t.priority);
+        return max;
+    }
+
+    public void add(Vehicle v) {
+        int lane = v.type.priority - 1;
+        Vehicle[] ring = rings[lane];
+        long tail = tails[lane];
+        if (ring == null || tail - heads[lane] == ring.length) ring = grow(lane);
+        ring[(int) (tail & (ring.length - 1))] = v;
+        v.queueTicket = tail;
+        tails[lane] = tail + 1;
+        size = size + 1;
+    }
+
+    // Removes a vehicle that is in this queue; returns false if it was not.
+    public boolean remove(Vehicle v) {
+        int lane = v.type.priority - 1;
+        Vehicle[] ring = rings[lane];
+        long ticket = v.queueTicket;
+        if (ring == null || ticket < heads[lane] || ticket >= tails[lane]) return false;
+        int i = (int) (ticket & (ring.length - 1));
+        if (ring[i] != v) return false;
+        ring[i] = null;
+        size = size - 1;
+        if (ticket == heads[lane]) skipHoles(lane);
+        return true;
+    }
+
+    // The vehicle allowed to move next, or null if the road is empty.
+    public Vehicle peek() {
+        if (size == 0) return null;
+        for (int lane = 0; lane < LANES; lane++) {
+            if (heads[lane] != tails[lane]) {
+                Vehicle[] ring = rings[lane];
+                return ring[(int) (heads[lane] & (ring.length - 1))];
+            }
+        }
+        return null;
+    }
+
+    public Vehicle poll() {
+        Vehicle v = peek();
+        if (v != null) remove(v);
+        return v;
+    }
+
+    // Vehicles in the order they will leave: by priority, then first come first served.
+    public Vehicle[] toArray() {
+        Vehicle[] out = new Vehicle[size];
+        int n = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            Vehicle[] ring = rings[lane];
+            for (long t = heads[lane]; t < tails[lane]; t++) {
+                Vehicle v = ring[(int) (t & (ring.length - 1))];
+                if (v != null) out[n++] = v;
+            }
+        }
+        return out;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        for (int lane = 0; lane < LANES; lane++) {
+            if (rings[lane] != null) Arrays.fill(rings[lane], null);
+            heads[lane] = tails[lane];
+        }
+        size = 0;
+    }
+
+    // Advances the head past slots freed by out-of-order removals, so the head slot is always occupied or the ring is empty.
+    private void skipHoles(int lane) {
+        Vehicle[] ring = rings[lane];
+        long head = heads[lane], tail = tails[lane];
+        while (head < tail && ring[(int) (head & (ring.length - 1))] == null) head++;
+        heads[lane] = head;
+    }
+
+    // Doubles a ring. Tickets stay valid because every live entry is stored at ticket & (length - 1) in the new ring too.
+    private Vehicle[] grow(int lane) {
+        Vehicle[] old = rings[lane];
+        Vehicle[] ring = new Vehicle[old == null ? 4 : old.length * 2];
+        if (old != null) {
+            for (long t = heads[lane]; t < tails[lane]; t++) {
+                ring[(int) (t & (ring.length - 1))] = old[(int) (t & (old.length - 1))];
+            }
+        }
+        rings[lane] = ring;
+        return ring;
+    }
+}
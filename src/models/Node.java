@@ -6,6 +6,7 @@ public class Node {
     public String name;
     public NodeType type;
     public TrafficLight trafficLight; // Only initialised if this node is an INTERSECTION
+    public int index = -1;            // Dense index assigned by CsrGraph
 
     public Node(int id, String name, NodeType type, int x, int y) {
         this.id = id;
@@ -0,0 +1,74 @@
+package models;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Interns CompiledRoutes by their node sequence, so the nine buses of three lines hold three routes and trips that the route cache
+// answers with the same path share one. Bounded LRU: routes that fall out are still valid for the vehicles holding them, a later
+// identical route just gets its own instance, and the table never pins more than 'capacity' routes.
+public class RouteTable {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final CsrGraph graph;
+    private final Map<Key, CompiledRoute> routes;
+    private long hits, misses;
+
+    public RouteTable(CsrGraph graph, int capacity) {
+        this.graph = graph;
+        this.routes = new LinkedHashMap<Key, CompiledRoute>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompiledRoute> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // The shared route through these dense node indices; roads are only resolved for a route the table does not know yet.
+    // 'nodes' may become part of the route and must not be modified afterwards.
+    public synchronized CompiledRoute intern(int[] nodes) {
+        Key key = new Key(nodes);
+        CompiledRoute known = routes.get(key);
+        if (known != null) {
+            hits++;
+            return known;
+        }
+        misses++;
+        CompiledRoute fresh = new CompiledRoute(graph, nodes);
+        routes.put(key, fresh);
+        return fresh;
+    }
+
+    public CompiledRoute intern(List<Node> path) {
+        int[] nodes = new int[path.size()];
+        for (int i = 0; i < nodes.length; i++) nodes[i] = path.get(i).index;
+        return intern(nodes);
+    }
+
+    public synchronized void clear() { routes.clear(); }
+
+    public synchronized int size() { return routes.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    private static final class Key {
+        final int[] nodes;
+        final int hash;
+
+        Key(int[] nodes) {
+            this.nodes = nodes;
+            this.hash = Arrays.hashCode(nodes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).nodes, nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -7,36 +7,93 @@ public class TrafficLight {
     private final int MIN_DURATION = 40;
     private final int MAX_DURATION = 250;
     private final int DEFAULT_DURATION = 100;
+    private long updates = 0; // Ticks applied so far, including skipped idle ones once caught up
 
     // Adaptive logic: Extends green light duration if the current lane is busy, or switches early if the current lane is empty.
     public void update(int nsQueue, int ewQueue) {
+        updates++;
         timer++;
-        int currentTargetDuration = DEFAULT_DURATION;
+        int currentTargetDuration = targetDuration(northSouthGreen, nsQueue, ewQueue);
 
-        if (northSouthGreen) {
+        if (timer > currentTargetDuration) {
+            northSouthGreen = !northSouthGreen;
+            timer = 0;
+        }
+    }
+
+    private int targetDuration(boolean nsGreen, int nsQueue, int ewQueue) {
+        if (nsGreen) {
         	// If N-S is empty but E/W is waiting, switch fast
-            if (nsQueue == 0 && ewQueue > 0) {
-                currentTargetDuration = MIN_DURATION;
-            }             
+            if (nsQueue == 0 && ewQueue > 0) return MIN_DURATION;
             // If N-S is heavy, extend duration
-            else if (nsQueue > ewQueue + 2) {
-                currentTargetDuration = MAX_DURATION;
-            }
+            if (nsQueue > ewQueue + 2) return MAX_DURATION;
         } else {
         	// If E-W is empty but N/S is waiting, switch fast
-            if (ewQueue == 0 && nsQueue > 0) {
-                currentTargetDuration = MIN_DURATION;
-            }             
+            if (ewQueue == 0 && nsQueue > 0) return MIN_DURATION;
             // If E-W is heavy, extend duration
-            else if (ewQueue > nsQueue + 2) {
-                currentTargetDuration = MAX_DURATION;
-            }
+            if (ewQueue > nsQueue + 2) return MAX_DURATION;
         }
+        return DEFAULT_DURATION;
+    }
 
-        if (timer > currentTargetDuration) {
-            northSouthGreen = !northSouthGreen;
-            timer = 0;
+    // Puts the light back into a saved state (phase, time in phase and updates applied), e.g. from a checkpoint.
+    public void restore(boolean northSouthGreen, int timer, long updates) {
+        this.northSouthGreen = northSouthGreen;
+        this.timer = timer;
+        this.updates = updates;
+    }
+
+    // Number of updates applied so far (one per tick, including skipped ones once caught up).
+    public long getUpdates() {
+        return updates;
+    }
+
+    // Applies the ticks an intersection was skipped for because no vehicle was waiting, up to 'ticks' updates in total.
+    public void catchUp(long ticks) {
+        advance(ticks, 0, 0);
+    }
+
+    // Applies updates up to 'ticks' in total while the queues stay at the given sizes. The durations of both phases are then fixed,
+    // so this is O(1) and gives the same result as calling update(nsQueue, ewQueue) once per tick.
+    public void advance(long ticks, int nsQueue, int ewQueue) {
+        if (ticks <= updates) return;
+        long state = project(ticks, nsQueue, ewQueue);
+        northSouthGreen = (state & 1) != 0;
+        timer = (int) (state >>> 1);
+        updates = ticks;
+    }
+
+    // Phase the light shows after 'ticks' updates if the queues keep the given sizes until then. Does not change the light.
+    public boolean northSouthGreenAt(long ticks, int nsQueue, int ewQueue) {
+        return (project(ticks, nsQueue, ewQueue) & 1) != 0;
+    }
+
+    // Updates from now until the phase changes, if the queues keep the given sizes.
+    public int updatesUntilSwitch(int nsQueue, int ewQueue) {
+        int duration = targetDuration(northSouthGreen, nsQueue, ewQueue);
+        return timer > duration ? 1 : duration + 1 - timer;
+    }
+
+    // State after 'ticks' updates with constant queues, packed as timer << 1 | (northSouthGreen ? 1 : 0).
+    private long project(long ticks, int nsQueue, int ewQueue) {
+        boolean green = northSouthGreen;
+        long remaining = ticks - updates;
+        if (remaining <= 0) return ((long) timer << 1) | (green ? 1 : 0);
+
+        long toSwitch = updatesUntilSwitch(nsQueue, ewQueue);
+        if (remaining < toSwitch) return ((timer + remaining) << 1) | (green ? 1 : 0);
+        remaining -= toSwitch;
+        green = !green;
+
+        // Now at the start of a phase: a full cycle is one phase of each direction
+        long first = targetDuration(green, nsQueue, ewQueue) + 1;
+        long second = targetDuration(!green, nsQueue, ewQueue) + 1;
+        remaining %= first + second;
+        if (remaining >= first) {
+            remaining -= first;
+            green = !green;
         }
+        return (remaining << 1) | (green ? 1 : 0);
     }
 
     // Determines if a vehicle approaching from a specific neighbor node has a green light based on its vertical vs horizontal approach angle.
@@ -1,37 +1,94 @@
 package models;
 
-import java.util.List;
-
-// Represents a moving entity in the simulation. Implements Comparable to allow sorting in PriorityQueues based on vehicle type and arrival time.
-public class Vehicle implements Comparable<Vehicle>{
+// Represents a moving entity in the simulation. Roads queue vehicles in an EdgeQueue by type priority, first come first served within a priority.
+// The state that changes every tick (position on the path, progress, current road) lives in a VehicleStore slot; this object is a
+// lightweight handle onto that slot plus the data that rarely changes. Once the vehicle has left the simulation the accessors return null.
+// The accessors read the store's arrays unsynchronized, so they are only safe on the simulation thread or under the store lock;
+// other threads read a VehicleSnapshot.
+public class Vehicle {
     public String id;
     public VehicleType type;
-    public Node current;
-	public Node next;
 	public Node destination;
-    public List<Node> path;
-    public int currentPathIndex = 0;
-    public double progress = 0; 		// Animation state: 0.0 (start of edge) to 1.0 (end of edge)    
+    public CompiledRoute route;         // Shared, immutable; the vehicle's position on it is VehicleStore.pathIndex
     public boolean isReturning = false; // Specific logic for emergency vehicles returning to their station
-    public long entryTime; 				// Used for FIFO ordering within the same priority level
-    public Edge currentEdgeObj = null; 	// Reference to the road (Edge) the vehicle is currently on
+    public long departTick;             // Engine tick the vehicle set off at, for trip times
+    public int spatialCell = -1;        // Grid cell the vehicle is bucketed in by SpatialIndex (-1 = not indexed)
+    public int spatialEntry;            // Its position in that cell's list, so SpatialIndex can remove it in O(1)
+    long queueTicket = -1;              // Position in its EdgeQueue priority ring, valid while it is queued
+
+    private final VehicleStore store;
+    int slot;                           // Slot in the store, -1 once the vehicle has been removed
+    private int generation = 0;         // Incremented each time the store reuses this handle for a new vehicle
 
-    public Vehicle(String id, VehicleType type, Node start, Node dest, List<Node> path) {
+    Vehicle(VehicleStore store, int slot, String id, VehicleType type, Node dest, CompiledRoute route) {
+        this.store = store;
+        this.slot = slot;
         this.id = id;
         this.type = type;
-        this.current = start;
         this.destination = dest;
-        this.path = path;
-        this.currentPathIndex = 0;
+        this.route = route;
+    }
+
+    // Rebinds a pooled handle to a new vehicle.
+    void reuse(int slot, String id, VehicleType type, Node dest, CompiledRoute route) {
+        this.generation++;
+        this.slot = slot;
+        this.id = id;
+        this.type = type;
+        this.destination = dest;
+        this.route = route;
         this.isReturning = false;
-        this.entryTime = System.nanoTime(); // Capture precise time for queue ordering
-        if (path.size() > 1) this.next = path.get(1);
+        this.departTick = 0;
+        this.spatialCell = -1;
+        this.queueTicket = -1;
+    }
+
+    // Distinguishes successive vehicles that used this handle; a stored (handle, generation) pair goes stale when the vehicle leaves.
+    public int generation() {
+        return generation;
+    }
+
+    public int slot() {
+        return slot;
+    }
+
+    // False once the vehicle has reached its destination (or was cleared) and left the simulation.
+    public boolean isActive() {
+        int s = slot;
+        return s >= 0 && store.nextNodes[s] >= 0;
+    }
+
+    // Node the vehicle last passed.
+    public Node current() {
+        int s = slot;
+        return s < 0 ? null : store.graph().nodes[store.currentNodes[s]];
+    }
+
+    // Node the vehicle is driving towards, or null if it has nowhere to go.
+    public Node next() {
+        int s = slot;
+        if (s < 0) return null;
+        int n = store.nextNodes[s];
+        return n < 0 ? null : store.graph().nodes[n];
+    }
+
+    // Animation state: 0.0 (start of edge) to 1.0 (end of edge).
+    public double progress() {
+        int s = slot;
+        return s < 0 ? 0 : store.progress[s];
+    }
+
+    // Index of current() in route.
+    public int pathIndex() {
+        int s = slot;
+        return s < 0 ? 0 : store.pathIndex[s];
     }
 
-    // Priority Queue sorting logic: 1. Priority (Emergency vehicles first). 2. Time (First-In-First-Out for vehicles of the same type).
-    public int compareTo(Vehicle other) {
-        int priorityComparison = Integer.compare(this.type.priority, other.type.priority);
-        if (priorityComparison != 0) return priorityComparison;
-        return Long.compare(this.entryTime, other.entryTime);
+    // The road (Edge) the vehicle is currently queued on, or null.
+    public Edge currentEdge() {
+        int s = slot;
+        if (s < 0) return null;
+        int e = store.edgeIds[s];
+        return e < 0 ? null : store.graph().edges[e];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package models;
+
+// Copy of what a view needs from every live vehicle, taken in one go by VehicleStore.snapshot() under the store lock. The store's
+// arrays are plain fields that the simulation thread writes (and grow() replaces), so another thread must not read them while a
+// tick runs; it reads a snapshot instead, which is consistent as of one tick boundary and never changes afterwards.
+// Entry i describes one vehicle; entries are in slot order.
+public final class VehicleSnapshot {
+    public final int size;
+    public final Vehicle[] handles;     // For identity (e.g. the GUI selection); do not read its position through it
+    public final int[] generations;     // Vehicle.generation() at the time of the snapshot
+    public final String[] ids;
+    public final VehicleType[] types;
+    public final Node[] current;        // Node last passed
+    public final Node[] next;           // Node it is driving towards, null if it has nowhere to go
+    public final double[] progress;
+    public final CompiledRoute[] routes;
+    public final Node[] destinations;
+    public final boolean[] returning;
+
+    VehicleSnapshot(int capacity) {
+        handles = new Vehicle[capacity];
+        generations = new int[capacity];
+        ids = new String[capacity];
+        types = new VehicleType[capacity];
+        current = new Node[capacity];
+        next = new Node[capacity];
+        progress = new double[capacity];
+        routes = new CompiledRoute[capacity];
+        destinations = new Node[capacity];
+        returning = new boolean[capacity];
+        size = capacity;
+    }
+
+    public double x(int i) {
+        return next[i] == null ? current[i].x : current[i].x + (next[i].x - current[i].x) * progress[i];
+    }
+
+    public double y(int i) {
+        return next[i] == null ? current[i].y : current[i].y + (next[i].y - current[i].y) * progress[i];
+    }
+
+    // Entry of a handle whose generation still matches, or -1 if that vehicle is not in the snapshot (it has left).
+    public int indexOf(Vehicle v, int generation) {
+        for (int i = 0; i < size; i++) {
+            if (handles[i] == v && generations[i] == generation) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,237 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Structure-of-arrays storage for the per-vehicle state the tick loop reads and writes. Each vehicle owns one slot, and slot i of every
+// array belongs to it, so a tick walks a few contiguous primitive arrays instead of chasing Vehicle -> Node -> Edge references.
+// Cold data (ID, route, destination) stays on the Vehicle handle. Freed slots go on a free list and are reused by the next add,
+// so the arrays stay as dense as the live population. Only the simulation side mutates the store; readers go through Vehicle handles.
+// The store is also the engine's vehicle registry: add and remove are O(1), and detached handles are pooled for the next spawn instead of
+// becoming garbage. The arrays are plain fields, written by the simulation thread and replaced when they grow, with nothing ordering
+// those writes for other threads: only code holding the store lock (the engine's lock) may read them or iterate the store. Other
+// threads, such as the GUI, take a snapshot() under the lock and read that.
+public class VehicleStore implements Iterable<Vehicle> {
+    public static final VehicleType[] TYPES = VehicleType.values(); // Ordinal -> VehicleType, for the types array
+
+    private final CsrGraph graph;
+    private final RouteTable routes;
+    public double[] progress;     // 0.0 (start of the current road) to 1.0 (end of it)
+    public int[] pathIndex;       // Index of the current node in the handle's route (its cursor)
+    public byte[] types;          // VehicleType ordinal
+    public int[] edgeIds;         // CSR id of the road the vehicle is queued on, -1 if none
+    public int[] currentNodes;    // Dense index of the node the vehicle last passed
+    public int[] nextNodes;       // Dense index of the node it is driving towards, -1 if it has nowhere to go
+    public Vehicle[] handles;     // Slot -> handle, null for free slots
+
+    private int[] freeSlots;
+    private int freeCount = 0;
+    private volatile int highWater = 0; // Slots 0 .. highWater - 1 have been used at least once
+    private volatile int size = 0;
+    private Vehicle[] pool = new Vehicle[64]; // Detached handles waiting to be reused
+    private int pooled = 0;
+
+    public VehicleStore(CsrGraph graph, int initialCapacity) {
+        this.graph = graph;
+        this.routes = new RouteTable(graph, RouteTable.DEFAULT_CAPACITY);
+        int capacity = Math.max(16, initialCapacity);
+        progress = new double[capacity];
+        pathIndex = new int[capacity];
+        types = new byte[capacity];
+        edgeIds = new int[capacity];
+        currentNodes = new int[capacity];
+        nextNodes = new int[capacity];
+        handles = new Vehicle[capacity];
+        freeSlots = new int[capacity];
+    }
+
+    public CsrGraph graph() {
+        return graph;
+    }
+
+    // Interning table for the routes of the vehicles in this store.
+    public RouteTable routes() {
+        return routes;
+    }
+
+    // Places a new vehicle at the start of its route and returns its handle. The caller still has to put it on its first road.
+    public Vehicle add(String id, VehicleType type, Node dest, CompiledRoute route) {
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        return place(slot, id, type, dest, route);
+    }
+
+    private Vehicle place(int slot, String id, VehicleType type, Node dest, CompiledRoute route) {
+        Vehicle v;
+        if (pooled > 0) {
+            v = pool[--pooled];
+            pool[pooled] = null;
+            v.reuse(slot, id, type, dest, route);
+        } else {
+            v = new Vehicle(this, slot, id, type, dest, route);
+        }
+        types[slot] = (byte) type.ordinal();
+        progress[slot] = 0;
+        edgeIds[slot] = -1;
+        pathIndex[slot] = 0;
+        currentNodes[slot] = route.nodes[0];
+        nextNodes[slot] = route.nodes.length > 1 ? route.nodes[1] : -1;
+        handles[slot] = v; // Marks the slot live for the tick loop and iterators; readers on other threads must hold the store lock
+        size++;
+        return v;
+    }
+
+    // Free slots in the order they are on the free list (add() takes the last one first). Used by checkpoints.
+    public int[] freeSlots() {
+        return Arrays.copyOf(freeSlots, freeCount);
+    }
+
+    // Recreates a saved slot layout in an empty store: slots 0 .. highWater - 1 exist, 'free' is the free list, and every other
+    // slot is expected to be filled with addAt(), so vehicles keep their slots (and the tick its order) across a restore.
+    public void restoreLayout(int highWater, int[] free) {
+        if (size != 0) throw new IllegalStateException("restoreLayout() needs an empty store");
+        while (handles.length < Math.max(highWater, free.length)) grow();
+        System.arraycopy(free, 0, freeSlots, 0, free.length);
+        freeCount = free.length;
+        this.highWater = highWater;
+    }
+
+    // Places a vehicle in a specific slot reserved by restoreLayout().
+    public Vehicle addAt(int slot, String id, VehicleType type, Node dest, CompiledRoute route) {
+        if (slot < 0 || slot >= highWater || handles[slot] != null) throw new IllegalArgumentException("Slot " + slot + " is not available");
+        return place(slot, id, type, dest, route);
+    }
+
+    private int nextSlot() {
+        if (highWater == handles.length) grow();
+        return highWater++;
+    }
+
+    // Doubles every array. The fields are replaced one after another, so an unlocked reader could pair a new handles array with an old,
+    // shorter state array; readers outside the simulation thread hold the store lock (or read a snapshot()).
+    private void grow() {
+        int capacity = handles.length * 2;
+        progress = Arrays.copyOf(progress, capacity);
+        pathIndex = Arrays.copyOf(pathIndex, capacity);
+        types = Arrays.copyOf(types, capacity);
+        edgeIds = Arrays.copyOf(edgeIds, capacity);
+        currentNodes = Arrays.copyOf(currentNodes, capacity);
+        nextNodes = Arrays.copyOf(nextNodes, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+    }
+
+    // Frees the vehicle's slot. The handle is detached (slot -1), so anyone still holding it sees a vehicle that has left,
+    // and then pooled; a holder that must tell a reused handle apart compares Vehicle.generation().
+    public void remove(Vehicle v) {
+        int slot = v.slot;
+        if (slot < 0 || handles[slot] != v) return;
+        nextNodes[slot] = -1;
+        edgeIds[slot] = -1;
+        handles[slot] = null;
+        freeSlots[freeCount++] = slot;
+        size--;
+        release(v);
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < highWater; slot++) {
+            Vehicle v = handles[slot];
+            handles[slot] = null;
+            if (v != null) release(v);
+        }
+        highWater = 0;
+        freeCount = 0;
+        size = 0;
+    }
+
+    private void release(Vehicle v) {
+        v.slot = -1;
+        v.spatialCell = -1;
+        if (pooled == pool.length) pool = Arrays.copyOf(pool, pooled * 2);
+        pool[pooled++] = v;
+    }
+
+    // Live vehicles in slot order. The caller holds the store lock or is the simulation thread itself.
+    @Override
+    public Iterator<Vehicle> iterator() {
+        Vehicle[] slots = handles;
+        int end = Math.min(highWater, slots.length);
+        return new Iterator<Vehicle>() {
+            private int slot = -1;
+            private Vehicle nextVehicle = advance();
+
+            private Vehicle advance() {
+                while (++slot < end) {
+                    Vehicle v = slots[slot];
+                    if (v != null) return v;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextVehicle != null;
+            }
+
+            @Override
+            public Vehicle next() {
+                if (nextVehicle == null) throw new NoSuchElementException();
+                Vehicle v = nextVehicle;
+                nextVehicle = advance();
+                return v;
+            }
+        };
+    }
+
+    // Moves a vehicle to a position on its route: current = nodes[index], next = nodes[index + 1] (or none past the end), progress 0.
+    public void setPathPosition(int slot, int index) {
+        int[] nodes = handles[slot].route.nodes;
+        pathIndex[slot] = index;
+        currentNodes[slot] = nodes[index];
+        nextNodes[slot] = index + 1 < nodes.length ? nodes[index + 1] : -1;
+        progress[slot] = 0;
+    }
+
+    // CSR id of the road from the vehicle's current node to its next one, read off its route; -1 if there is none.
+    public int routeEdge(int slot) {
+        int[] edges = handles[slot].route.edges;
+        int i = pathIndex[slot];
+        return i < edges.length ? edges[i] : -1;
+    }
+
+    // Consistent copy of every live vehicle for another thread to read. The caller holds the store lock.
+    public VehicleSnapshot snapshot() {
+        VehicleSnapshot snap = new VehicleSnapshot(size);
+        int i = 0;
+        for (int slot = 0; slot < highWater && i < snap.size; slot++) {
+            Vehicle v = handles[slot];
+            if (v == null) continue;
+            snap.handles[i] = v;
+            snap.generations[i] = v.generation();
+            snap.ids[i] = v.id;
+            snap.types[i] = v.type;
+            snap.current[i] = graph.nodes[currentNodes[slot]];
+            snap.next[i] = nextNodes[slot] < 0 ? null : graph.nodes[nextNodes[slot]];
+            snap.progress[i] = progress[slot];
+            snap.routes[i] = v.route;
+            snap.destinations[i] = v.destination;
+            snap.returning[i] = v.isReturning;
+            i++;
+        }
+        return snap;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Upper bound for slot loops; slots below it with a null handle are free.
+    public int highWater() {
+        return highWater;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,33 @@
+package routing;
+
+import models.CsrGraph;
+
+// A* with a straight-line heuristic. Node coordinates are in pixels while weights are in road units, so the pixel distance
+// is scaled by the smallest weight-per-pixel ratio found on any road. That keeps the heuristic a true lower bound.
+public class AStarRouter extends GoalDirectedRouter {
+    private final double unitsPerPixel;
+
+    public AStarRouter(CsrGraph graph) {
+        super(graph);
+        double ratio = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < graph.edgeCount; e++) {
+            double pixels = pixelDistance(graph.sources[e], graph.targets[e]);
+            if (pixels > 0) ratio = Math.min(ratio, graph.baseWeights[e] / pixels);
+        }
+        this.unitsPerPixel = (ratio == Double.POSITIVE_INFINITY) ? 0.0 : Math.max(ratio, 0.0);
+    }
+
+    @Override
+    public String name() { return "astar"; }
+
+    @Override
+    protected double potential(int v, int target) {
+        return unitsPerPixel * pixelDistance(v, target);
+    }
+
+    private double pixelDistance(int a, int b) {
+        double dx = graph.xs[a] - graph.xs[b];
+        double dy = graph.ys[a] - graph.ys[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,44 @@
+package routing;
+
+import java.util.concurrent.atomic.LongAdder;
+import models.CsrGraph;
+
+// Shared plumbing for the routing strategies: per-thread search spaces, settled-node accounting and path reconstruction.
+abstract class AbstractRouter implements RoutingStrategy {
+    protected final CsrGraph graph;
+    private final LongAdder settled = new LongAdder();
+    private final ThreadLocal<SearchSpace[]> spaces;
+
+    AbstractRouter(CsrGraph graph) {
+        this.graph = graph;
+        this.spaces = ThreadLocal.withInitial(() -> new SearchSpace[] {
+                new SearchSpace(graph.nodeCount), new SearchSpace(graph.nodeCount) });
+    }
+
+    // Forward (0) or backward (1) scratch space of the calling thread, already reset for a new query.
+    protected SearchSpace space(int direction) {
+        SearchSpace s = spaces.get()[direction];
+        s.reset();
+        return s;
+    }
+
+    protected void countSettled(int n) {
+        settled.add(n);
+    }
+
+    @Override
+    public long settledNodes() {
+        return settled.sum();
+    }
+
+    // Walks parent edges back from target to the search root and returns the node indices in travel order.
+    protected int[] forwardPath(SearchSpace s, int source, int target) {
+        int length = 1;
+        for (int v = target; v != source; v = graph.sources[s.parentEdge[v]]) length++;
+        int[] path = new int[length];
+        int i = length - 1;
+        for (int v = target; v != source; v = graph.sources[s.parentEdge[v]]) path[i--] = v;
+        path[0] = source;
+        return path;
+    }
+}
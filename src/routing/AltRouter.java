@@ -0,0 +1,112 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// ALT: A* with Landmarks and the Triangle inequality. Distances to and from a few landmark nodes are precomputed on base weights;
+// the triangle inequality then gives a lower bound for any pair of nodes. Memory is 2 * landmarks * nodes doubles.
+public class AltRouter extends GoalDirectedRouter {
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private final int[] landmarks;
+    private final double[][] fromLandmark; // fromLandmark[l][v] = d(landmark l, v)
+    private final double[][] toLandmark;   // toLandmark[l][v]   = d(v, landmark l)
+
+    public AltRouter(CsrGraph graph) {
+        this(graph, DEFAULT_LANDMARKS);
+    }
+
+    public AltRouter(CsrGraph graph, int landmarkCount) {
+        super(graph);
+        int count = Math.max(0, Math.min(landmarkCount, graph.nodeCount));
+        landmarks = new int[count];
+        fromLandmark = new double[count][];
+        toLandmark = new double[count][];
+        selectLandmarks();
+    }
+
+    @Override
+    public String name() { return "alt"; }
+
+    public int[] landmarks() { return landmarks.clone(); }
+
+    // Farthest-point selection: each new landmark is the reachable node farthest from all landmarks chosen so far.
+    private void selectLandmarks() {
+        if (landmarks.length == 0) return;
+        double[] nearest = new double[graph.nodeCount];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        int next = farthestFrom(baseDistances(0, true));
+        for (int l = 0; l < landmarks.length; l++) {
+            landmarks[l] = next;
+            fromLandmark[l] = baseDistances(next, true);
+            toLandmark[l] = baseDistances(next, false);
+
+            double best = -1;
+            for (int v = 0; v < graph.nodeCount; v++) {
+                double d = Math.min(fromLandmark[l][v], toLandmark[l][v]);
+                nearest[v] = Math.min(nearest[v], d);
+                if (nearest[v] != Double.POSITIVE_INFINITY && nearest[v] > best) {
+                    best = nearest[v];
+                    next = v;
+                }
+            }
+        }
+    }
+
+    private static int farthestFrom(double[] dist) {
+        int best = 0;
+        for (int v = 0; v < dist.length; v++) {
+            if (dist[v] != Double.POSITIVE_INFINITY && dist[v] > dist[best]) best = v;
+        }
+        return best;
+    }
+
+    // One-to-all Dijkstra on base weights, over outgoing (forward) or incoming (backward) edges.
+    private double[] baseDistances(int root, boolean forward) {
+        double[] dist = new double[graph.nodeCount];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        MinHeap heap = new MinHeap();
+        dist[root] = 0.0;
+        heap.push(root, 0.0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+            if (d > dist[u]) continue;
+            int from = forward ? graph.offsets[u] : graph.inOffsets[u];
+            int to = forward ? graph.offsets[u + 1] : graph.inOffsets[u + 1];
+            for (int i = from; i < to; i++) {
+                int e = forward ? i : graph.inEdges[i];
+                int v = forward ? graph.targets[e] : graph.sources[e];
+                double nd = d + graph.baseWeights[e];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    heap.push(v, nd);
+                }
+            }
+        }
+        return dist;
+    }
+
+    @Override
+    protected double potential(int v, int target) {
+        double bound = 0.0;
+        for (int l = 0; l < landmarks.length; l++) {
+            double[] from = fromLandmark[l];
+            double[] to = toLandmark[l];
+            // d(v, t) >= d(L, t) - d(L, v)
+            if (from[v] != Double.POSITIVE_INFINITY && from[target] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, from[target] - from[v]);
+            } else if (from[v] != Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY; // L reaches v but not t, so v cannot reach t either
+            }
+            // d(v, t) >= d(v, L) - d(t, L)
+            if (to[v] != Double.POSITIVE_INFINITY && to[target] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, to[v] - to[target]);
+            } else if (to[target] != Double.POSITIVE_INFINITY) {
+                return Double.POSITIVE_INFINITY; // t reaches L but v does not, so v cannot reach t
+            }
+        }
+        return bound;
+    }
+}
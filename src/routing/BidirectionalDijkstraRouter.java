@@ -0,0 +1,73 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// Bidirectional Dijkstra: grows one search forward from the source and one backward (over incoming edges) from the target,
+// always expanding the smaller frontier. Stops once the two frontier minima together exceed the best meeting cost found.
+public class BidirectionalDijkstraRouter extends AbstractRouter {
+
+    public BidirectionalDijkstraRouter(CsrGraph graph) {
+        super(graph);
+    }
+
+    @Override
+    public String name() { return "bidirectional"; }
+
+    @Override
+    public int[] route(int source, int target) {
+        SearchSpace fwd = space(0);
+        SearchSpace bwd = space(1);
+        fwd.update(source, 0.0, -1);
+        fwd.heap.push(source, 0.0);
+        bwd.update(target, 0.0, -1);
+        bwd.heap.push(target, 0.0);
+
+        double best = (source == target) ? 0.0 : Double.POSITIVE_INFINITY;
+        int meeting = (source == target) ? source : -1;
+
+        while (!fwd.heap.isEmpty() && !bwd.heap.isEmpty()) {
+            if (fwd.heap.peekKey() + bwd.heap.peekKey() >= best) break;
+
+            boolean forward = fwd.heap.size() <= bwd.heap.size();
+            SearchSpace s = forward ? fwd : bwd;
+            SearchSpace other = forward ? bwd : fwd;
+
+            double d = s.heap.peekKey();
+            int u = s.heap.pop();
+            if (s.isSettled(u)) continue;
+            s.settle(u);
+
+            int from = forward ? graph.offsets[u] : graph.inOffsets[u];
+            int to = forward ? graph.offsets[u + 1] : graph.inOffsets[u + 1];
+            for (int i = from; i < to; i++) {
+                int e = forward ? i : graph.inEdges[i];
+                int v = forward ? graph.targets[e] : graph.sources[e];
+                double nd = d + graph.currentWeight(e);
+                if (nd < s.distance(v)) {
+                    s.update(v, nd, e);
+                    s.heap.push(v, nd);
+                }
+                double through = s.distance(v) + other.distance(v);
+                if (through < best) {
+                    best = through;
+                    meeting = v;
+                }
+            }
+        }
+        countSettled(fwd.settledCount + bwd.settledCount);
+        if (meeting < 0) return null;
+
+        // Forward half: source .. meeting. Backward half: parent edges point from a node toward the target.
+        int[] head = forwardPath(fwd, source, meeting);
+        int tail = 0;
+        for (int v = meeting; v != target; v = graph.targets[bwd.parentEdge[v]]) tail++;
+        int[] path = Arrays.copyOf(head, head.length + tail);
+        int i = head.length;
+        for (int v = meeting; v != target; ) {
+            v = graph.targets[bwd.parentEdge[v]];
+            path[i++] = v;
+        }
+        return path;
+    }
+}
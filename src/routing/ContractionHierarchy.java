@@ -0,0 +1,258 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// Metric-independent part of a Customizable Contraction Hierarchy (CCH). Built once from the topology:
+// 1. Nodes are ranked by nested dissection on their coordinates (separators are contracted last).
+// 2. The chordal fill-in of that order is computed, giving the upward arcs (low rank -> high rank) of the hierarchy.
+// Edge costs are not used here; they are applied later by customize(), which is cheap enough to rerun whenever congestion changes.
+public class ContractionHierarchy {
+    final CsrGraph graph;
+    final int nodeCount;
+    final int[] rank;      // Dense node index -> rank
+    final int[] nodeAt;    // Rank -> dense node index
+    final int[] upOffsets; // Arcs leaving rank r upward are upOffsets[r] .. upOffsets[r + 1] - 1
+    final int[] upHeads;   // Arc -> rank of the higher endpoint (sorted ascending within each rank)
+    final int[] arcTails;  // Arc -> rank of the lower endpoint
+    final int arcCount;
+    final long preprocessingNanos;
+
+    public ContractionHierarchy(CsrGraph graph) {
+        long started = System.nanoTime();
+        this.graph = graph;
+        this.nodeCount = graph.nodeCount;
+        this.nodeAt = nestedDissectionOrder(graph);
+        this.rank = new int[nodeCount];
+        for (int r = 0; r < nodeCount; r++) rank[nodeAt[r]] = r;
+
+        // Initial upward neighbour lists from the (undirected) road graph, in rank space
+        int[][] up = new int[nodeCount][];
+        int[] upSize = new int[nodeCount];
+        for (int r = 0; r < nodeCount; r++) up[r] = new int[4];
+        for (int e = 0; e < graph.edgeCount; e++) {
+            int a = rank[graph.sources[e]];
+            int b = rank[graph.targets[e]];
+            if (a == b) continue;
+            int low = Math.min(a, b), high = Math.max(a, b);
+            if (upSize[low] == up[low].length) up[low] = Arrays.copyOf(up[low], upSize[low] * 2);
+            up[low][upSize[low]++] = high;
+        }
+
+        // Elimination game: contracting rank r makes its upper neighbours a clique. It is enough to hand them to the lowest of them,
+        // which contracts next among the group and passes them on (the elimination tree parent).
+        int total = 0;
+        for (int r = 0; r < nodeCount; r++) {
+            int[] list = up[r];
+            Arrays.sort(list, 0, upSize[r]);
+            int unique = 0;
+            for (int i = 0; i < upSize[r]; i++) {
+                if (unique == 0 || list[unique - 1] != list[i]) list[unique++] = list[i];
+            }
+            up[r] = Arrays.copyOf(list, unique);
+            upSize[r] = unique;
+            total += unique;
+            if (unique > 1) {
+                int parent = up[r][0];
+                int need = upSize[parent] + unique - 1;
+                if (need > up[parent].length) up[parent] = Arrays.copyOf(up[parent], Math.max(need, up[parent].length * 2));
+                System.arraycopy(up[r], 1, up[parent], upSize[parent], unique - 1);
+                upSize[parent] = need;
+            }
+        }
+
+        arcCount = total;
+        upOffsets = new int[nodeCount + 1];
+        upHeads = new int[arcCount];
+        arcTails = new int[arcCount];
+        int a = 0;
+        for (int r = 0; r < nodeCount; r++) {
+            upOffsets[r] = a;
+            for (int head : up[r]) {
+                upHeads[a] = head;
+                arcTails[a] = r;
+                a++;
+            }
+            up[r] = null;
+        }
+        upOffsets[nodeCount] = a;
+        preprocessingNanos = System.nanoTime() - started;
+    }
+
+    // Arc id between two ranks (low < high), or -1 if the hierarchy has no such arc.
+    int arc(int low, int high) {
+        int i = Arrays.binarySearch(upHeads, upOffsets[low], upOffsets[low + 1], high);
+        return i >= 0 ? i : -1;
+    }
+
+    public int getArcCount() { return arcCount; }
+    public long getPreprocessingNanos() { return preprocessingNanos; }
+
+    // Computes shortcut weights from the current edge weights (Edge.getCurrentWeight) by processing lower triangles in rank order.
+    public Metric customize() {
+        return customize(null);
+    }
+
+    // Same, from a snapshot of the edge weights (edge id -> weight) instead of the live ones; null means the live weights.
+    public Metric customize(double[] weights) {
+        long started = System.nanoTime();
+        Metric m = new Metric(arcCount);
+
+        for (int e = 0; e < graph.edgeCount; e++) {
+            int a = rank[graph.sources[e]];
+            int b = rank[graph.targets[e]];
+            if (a == b) continue;
+            double w = (weights != null) ? weights[e] : graph.currentWeight(e);
+            if (a < b) {
+                int arc = arc(a, b);
+                if (w < m.up[arc]) { m.up[arc] = w; m.upEdge[arc] = e; }
+            } else {
+                int arc = arc(b, a);
+                if (w < m.down[arc]) { m.down[arc] = w; m.downEdge[arc] = e; }
+            }
+        }
+
+        // For every lower triangle x < v < w: v->w may go v->x->w and w->v may go w->x->v
+        for (int x = 0; x < nodeCount; x++) {
+            int begin = upOffsets[x], end = upOffsets[x + 1];
+            for (int i = begin; i < end; i++) {
+                int v = upHeads[i];
+                for (int j = i + 1; j < end; j++) {
+                    int w = upHeads[j];
+                    int c = arc(v, w);
+                    double viaUp = m.down[i] + m.up[j];
+                    if (viaUp < m.up[c]) { m.up[c] = viaUp; m.upMid[c] = x; m.upEdge[c] = -1; }
+                    double viaDown = m.down[j] + m.up[i];
+                    if (viaDown < m.down[c]) { m.down[c] = viaDown; m.downMid[c] = x; m.downEdge[c] = -1; }
+                }
+            }
+        }
+        m.customizationNanos = System.nanoTime() - started;
+        return m;
+    }
+
+    // Customized weights of every arc in both directions, plus enough information to unpack shortcuts back into road edges.
+    public static final class Metric {
+        final double[] up;     // Cost low -> high
+        final double[] down;   // Cost high -> low
+        final int[] upMid;     // Middle rank of the shortcut, or -1 when the arc is a plain road
+        final int[] downMid;
+        final int[] upEdge;    // Original edge id when the arc is a plain road
+        final int[] downEdge;
+        long customizationNanos;
+
+        Metric(int arcs) {
+            up = new double[arcs];
+            down = new double[arcs];
+            upMid = new int[arcs];
+            downMid = new int[arcs];
+            upEdge = new int[arcs];
+            downEdge = new int[arcs];
+            Arrays.fill(up, Double.POSITIVE_INFINITY);
+            Arrays.fill(down, Double.POSITIVE_INFINITY);
+            Arrays.fill(upMid, -1);
+            Arrays.fill(downMid, -1);
+            Arrays.fill(upEdge, -1);
+            Arrays.fill(downEdge, -1);
+        }
+
+        public long getCustomizationNanos() { return customizationNanos; }
+    }
+
+    // Nested dissection on coordinates: split the node set at the median of its wider axis, take the nodes of one half that touch
+    // the other half as separator, order both halves recursively and put the separator last. Returns rank -> node index.
+    static int[] nestedDissectionOrder(CsrGraph graph) {
+        int n = graph.nodeCount;
+        int[] order = new int[n];
+        int[] part = new int[n];       // Part label of each node during the current split
+        int[] nodes = new int[n];
+        for (int i = 0; i < n; i++) nodes[i] = i;
+        Arrays.fill(part, -1);
+
+        // Explicit work stack instead of recursion: each task is a range of 'nodes' and the rank slot its order must end at
+        int[] stackFrom = new int[64], stackTo = new int[64], stackLast = new int[64];
+        int depth = 0;
+        stackFrom[0] = 0; stackTo[0] = n; stackLast[0] = n;
+        depth = 1;
+        int label = 0;
+
+        while (depth > 0) {
+            depth--;
+            int from = stackFrom[depth], to = stackTo[depth], last = stackLast[depth];
+            int size = to - from;
+            if (size <= 2) {
+                for (int i = 0; i < size; i++) order[last - size + i] = nodes[from + i];
+                continue;
+            }
+
+            // Sort the range by the wider coordinate axis and split at the median
+            int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                int v = nodes[i];
+                minX = Math.min(minX, graph.xs[v]); maxX = Math.max(maxX, graph.xs[v]);
+                minY = Math.min(minY, graph.ys[v]); maxY = Math.max(maxY, graph.ys[v]);
+            }
+            final int[] axis = (maxX - minX >= maxY - minY) ? graph.xs : graph.ys;
+            sortByKey(nodes, from, to, axis);
+            int mid = from + size / 2;
+
+            int left = ++label, right = ++label;
+            for (int i = from; i < mid; i++) part[nodes[i]] = left;
+            for (int i = mid; i < to; i++) part[nodes[i]] = right;
+
+            // Separator: left nodes adjacent (in either direction) to a right node
+            int sepCount = 0;
+            for (int i = from; i < mid; i++) {
+                int v = nodes[i];
+                if (touches(graph, v, right, part)) {
+                    part[v] = 0; // Mark as separator
+                    sepCount++;
+                }
+            }
+            if (sepCount == mid - from) { // Degenerate split (e.g. a clique): order the whole range directly
+                for (int i = 0; i < size; i++) order[last - size + i] = nodes[from + i];
+                continue;
+            }
+
+            // Stable partition of the range into [left half | right half | separator]
+            int[] buffer = new int[size];
+            int b = 0;
+            for (int i = from; i < mid; i++) if (part[nodes[i]] == left) buffer[b++] = nodes[i];
+            int leftCount = b;
+            for (int i = mid; i < to; i++) buffer[b++] = nodes[i];
+            int rightCount = b - leftCount;
+            for (int i = from; i < mid; i++) if (part[nodes[i]] == 0) buffer[b++] = nodes[i];
+            System.arraycopy(buffer, 0, nodes, from, size);
+
+            for (int i = 0; i < sepCount; i++) order[last - sepCount + i] = nodes[from + leftCount + rightCount + i];
+
+            if (depth + 2 > stackFrom.length) {
+                stackFrom = Arrays.copyOf(stackFrom, depth * 2 + 2);
+                stackTo = Arrays.copyOf(stackTo, depth * 2 + 2);
+                stackLast = Arrays.copyOf(stackLast, depth * 2 + 2);
+            }
+            int rightEnd = last - sepCount;
+            stackFrom[depth] = from + leftCount; stackTo[depth] = from + leftCount + rightCount; stackLast[depth] = rightEnd; depth++;
+            stackFrom[depth] = from; stackTo[depth] = from + leftCount; stackLast[depth] = rightEnd - rightCount; depth++;
+        }
+        return order;
+    }
+
+    private static boolean touches(CsrGraph graph, int v, int otherPart, int[] part) {
+        for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+            if (part[graph.targets[e]] == otherPart) return true;
+        }
+        for (int i = graph.inOffsets[v]; i < graph.inOffsets[v + 1]; i++) {
+            if (part[graph.sources[graph.inEdges[i]]] == otherPart) return true;
+        }
+        return false;
+    }
+
+    // Sorts nodes[from, to) by key[node] (ties by node index, so the order is deterministic).
+    private static void sortByKey(int[] nodes, int from, int to, int[] key) {
+        long[] packed = new long[to - from];
+        for (int i = from; i < to; i++) packed[i - from] = ((long) key[nodes[i]] << 32) | (nodes[i] & 0xffffffffL);
+        Arrays.sort(packed);
+        for (int i = from; i < to; i++) nodes[i] = (int) packed[i - from];
+    }
+}
@@ -0,0 +1,209 @@
+package routing;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import models.CsrGraph;
+
+// Routing on a Customizable Contraction Hierarchy. Queries run two upward Dijkstra searches (source side over low->high costs,
+// target side over high->low costs) that only ever climb in rank, then unpack the shortcuts on the best meeting path.
+// Routes follow the weights of the last customization; requestCustomization() refreshes them on a background thread.
+public class ContractionHierarchyRouter extends AbstractRouter {
+    private final ContractionHierarchy hierarchy;
+    private volatile ContractionHierarchy.Metric metric;
+    private final AtomicBoolean customizationPending = new AtomicBoolean(false);
+    private ExecutorService customizer;
+
+    public ContractionHierarchyRouter(CsrGraph graph) {
+        super(graph);
+        this.hierarchy = new ContractionHierarchy(graph);
+        this.metric = hierarchy.customize();
+    }
+
+    @Override
+    public String name() { return "cch"; }
+
+    public ContractionHierarchy getHierarchy() { return hierarchy; }
+
+    // Re-customizes synchronously from the current edge weights and publishes the new metric.
+    public long customize() {
+        return customize(null);
+    }
+
+    // Re-customizes synchronously from a snapshot of the edge weights (null = current weights) and publishes the new metric.
+    public long customize(double[] weights) {
+        ContractionHierarchy.Metric fresh = hierarchy.customize(weights);
+        metric = fresh;
+        return fresh.getCustomizationNanos();
+    }
+
+    public long getLastCustomizationNanos() { return metric.getCustomizationNanos(); }
+
+    // Schedules a customization on the background thread. Requests arriving while one is queued are merged into it.
+    public void requestCustomization() {
+        if (!customizationPending.compareAndSet(false, true)) return;
+        synchronized (this) {
+            if (customizer == null) {
+                customizer = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "cch-customizer");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+        }
+        customizer.execute(() -> {
+            customizationPending.set(false);
+            customize();
+        });
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        ContractionHierarchy h = hierarchy;
+        ContractionHierarchy.Metric m = metric;
+        SearchSpace fwd = space(0);
+        SearchSpace bwd = space(1);
+        int s = h.rank[source], t = h.rank[target];
+        fwd.update(s, 0.0, -1);
+        fwd.heap.push(s, 0.0);
+        bwd.update(t, 0.0, -1);
+        bwd.heap.push(t, 0.0);
+
+        double best = (s == t) ? 0.0 : Double.POSITIVE_INFINITY;
+        int meeting = (s == t) ? s : -1;
+
+        // Each side may stop once its smallest key can no longer improve the best meeting cost
+        while (true) {
+            boolean fwdActive = !fwd.heap.isEmpty() && fwd.heap.peekKey() < best;
+            boolean bwdActive = !bwd.heap.isEmpty() && bwd.heap.peekKey() < best;
+            if (!fwdActive && !bwdActive) break;
+            boolean forward = fwdActive && (!bwdActive || fwd.heap.peekKey() <= bwd.heap.peekKey());
+            SearchSpace side = forward ? fwd : bwd;
+            SearchSpace other = forward ? bwd : fwd;
+            double[] cost = forward ? m.up : m.down;
+
+            double d = side.heap.peekKey();
+            int u = side.heap.pop();
+            if (side.isSettled(u)) continue;
+            side.settle(u);
+
+            double through = d + other.distance(u);
+            if (through < best) {
+                best = through;
+                meeting = u;
+            }
+            for (int a = h.upOffsets[u]; a < h.upOffsets[u + 1]; a++) {
+                double nd = d + cost[a];
+                int v = h.upHeads[a];
+                if (nd < side.distance(v)) {
+                    side.update(v, nd, a);
+                    side.heap.push(v, nd);
+                }
+            }
+        }
+        countSettled(fwd.settledCount + bwd.settledCount);
+        if (meeting < 0) return null;
+
+        // Collect hierarchy arcs: source side climbs (low->high), target side descends (high->low)
+        IntList path = new IntList();
+        path.add(source);
+        int[] climb = new int[16];
+        int climbSize = 0;
+        for (int r = meeting; r != s; r = h.arcTails[fwd.parentEdge[r]]) {
+            if (climbSize == climb.length) climb = Arrays.copyOf(climb, climbSize * 2);
+            climb[climbSize++] = fwd.parentEdge[r];
+        }
+        for (int i = climbSize - 1; i >= 0; i--) unpack(h, m, climb[i], true, path);
+        for (int r = meeting; r != t; r = h.arcTails[bwd.parentEdge[r]]) unpack(h, m, bwd.parentEdge[r], false, path);
+        return path.toArray();
+    }
+
+    // Expands one hierarchy arc into road nodes (appending all but its start node). An explicit stack keeps deep shortcut chains off the call stack.
+    private void unpack(ContractionHierarchy h, ContractionHierarchy.Metric m, int arc, boolean upward, IntList out) {
+        IntList stack = new IntList();
+        stack.add(arc * 2 + (upward ? 1 : 0));
+        while (stack.size() > 0) {
+            int item = stack.pop();
+            int a = item >>> 1;
+            boolean up = (item & 1) == 1;
+            int mid = up ? m.upMid[a] : m.downMid[a];
+            if (mid < 0) {
+                int edge = up ? m.upEdge[a] : m.downEdge[a];
+                out.add(graph.targets[edge]);
+                continue;
+            }
+            int low = h.arcTails[a], high = h.upHeads[a];
+            int toLow = h.arc(mid, low);   // Arc between mid and the low endpoint
+            int toHigh = h.arc(mid, high); // Arc between mid and the high endpoint
+            // low->high = low->mid (descend toLow) then mid->high (climb toHigh); high->low is the mirror image. Push in reverse order.
+            if (up) {
+                stack.add(toHigh * 2 + 1);
+                stack.add(toLow * 2);
+            } else {
+                stack.add(toLow * 2 + 1);
+                stack.add(toHigh * 2);
+            }
+        }
+    }
+
+    // Checks the hierarchy against a reference strategy on random pairs and reports timings. The metric is refreshed first so both
+    // sides see the same edge weights. The report counts pairs whose route costs differ.
+    public Report verify(RoutingStrategy reference, int samples, long seed) {
+        Report report = new Report();
+        report.preprocessingNanos = hierarchy.getPreprocessingNanos();
+        report.customizationNanos = customize();
+        report.arcs = hierarchy.getArcCount();
+        Random random = new Random(seed);
+        for (int i = 0; i < samples && graph.nodeCount > 0; i++) {
+            int s = random.nextInt(graph.nodeCount);
+            int t = random.nextInt(graph.nodeCount);
+            long started = System.nanoTime();
+            int[] fast = route(s, t);
+            report.queryNanos += System.nanoTime() - started;
+            started = System.nanoTime();
+            int[] slow = reference.route(s, t);
+            report.referenceNanos += System.nanoTime() - started;
+            double a = cost(fast), b = cost(slow);
+            if (a != b && !(Math.abs(a - b) <= 1e-6 * Math.max(1.0, b))) report.mismatches++;
+            report.queries++;
+        }
+        return report;
+    }
+
+    private double cost(int[] path) {
+        if (path == null) return Double.POSITIVE_INFINITY;
+        double c = 0;
+        for (int i = 0; i + 1 < path.length; i++) c += graph.currentWeight(graph.edgeId(path[i], path[i + 1]));
+        return c;
+    }
+
+    // Result of verify(): correctness against the reference and the three timings we track for the hierarchy.
+    public static class Report {
+        public long preprocessingNanos, customizationNanos, queryNanos, referenceNanos;
+        public int queries, mismatches, arcs;
+
+        @Override
+        public String toString() {
+            return String.format("CCH: arcs=%d, preprocessing=%.1f ms, customization=%.1f ms, query=%.1f us (reference %.1f us), mismatches=%d/%d",
+                    arcs, preprocessingNanos / 1e6, customizationNanos / 1e6,
+                    queries == 0 ? 0 : queryNanos / 1e3 / queries, queries == 0 ? 0 : referenceNanos / 1e3 / queries, mismatches, queries);
+        }
+    }
+
+    // Growable int array used while unpacking routes.
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        int pop() { return data[--size]; }
+        int size() { return size; }
+        int[] toArray() { return Arrays.copyOf(data, size); }
+    }
+}
@@ -0,0 +1,81 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// Plain single-direction Dijkstra on current edge weights (distance + congestion). Reference strategy for the others.
+public class DijkstraRouter extends AbstractRouter {
+
+    public DijkstraRouter(CsrGraph graph) {
+        super(graph);
+    }
+
+    @Override
+    public String name() { return "dijkstra"; }
+
+    @Override
+    public int[] route(int source, int target) {
+        SearchSpace s = space(0);
+        s.update(source, 0.0, -1);
+        s.heap.push(source, 0.0);
+
+        while (!s.heap.isEmpty()) {
+            double d = s.heap.peekKey();
+            int u = s.heap.pop();
+            if (s.isSettled(u) || d > s.distance(u)) continue;
+            s.settle(u);
+            if (u == target) break;
+
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                double nd = d + graph.currentWeight(e);
+                if (nd < s.distance(v)) {
+                    s.update(v, nd, e);
+                    s.heap.push(v, nd);
+                }
+            }
+        }
+        countSettled(s.settledCount);
+        return s.isSettled(target) ? forwardPath(s, source, target) : null;
+    }
+
+    // One-to-many search: grows a single shortest-path tree from source until every target is settled (or the graph is exhausted)
+    // and returns one path per entry of targets, in the same order (null where unreachable).
+    public int[][] routeToAll(int source, int[] targets) {
+        int[] pending = targets.clone();
+        Arrays.sort(pending);
+        int remaining = 0;
+        for (int i = 0; i < pending.length; i++) {
+            if (i == 0 || pending[i] != pending[i - 1]) pending[remaining++] = pending[i];
+        }
+        pending = Arrays.copyOf(pending, remaining);
+
+        SearchSpace s = space(0);
+        s.update(source, 0.0, -1);
+        s.heap.push(source, 0.0);
+
+        while (!s.heap.isEmpty() && remaining > 0) {
+            double d = s.heap.peekKey();
+            int u = s.heap.pop();
+            if (s.isSettled(u) || d > s.distance(u)) continue;
+            s.settle(u);
+            if (Arrays.binarySearch(pending, u) >= 0) remaining--;
+
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                double nd = d + graph.currentWeight(e);
+                if (nd < s.distance(v)) {
+                    s.update(v, nd, e);
+                    s.heap.push(v, nd);
+                }
+            }
+        }
+        countSettled(s.settledCount);
+
+        int[][] paths = new int[targets.length][];
+        for (int i = 0; i < targets.length; i++) {
+            if (s.isSettled(targets[i])) paths[i] = forwardPath(s, source, targets[i]);
+        }
+        return paths;
+    }
+}
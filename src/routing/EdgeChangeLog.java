@@ -0,0 +1,46 @@
+package routing;
+
+import java.util.Arrays;
+
+// Append-only ring of edge ids whose cost changed (vehicle entered or left the road). Incremental searches remember the last
+// sequence number they applied and replay only the newer entries; one that falls further behind than the ring holds starts over.
+public class EdgeChangeLog {
+    private final int[] ring;
+    private final int mask;
+    private long head = 0; // Sequence number of the next entry
+
+    public EdgeChangeLog(int capacityPowerOfTwo) {
+        int capacity = Integer.highestOneBit(Math.max(2, capacityPowerOfTwo));
+        ring = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public synchronized void record(int edgeId) {
+        ring[(int) (head & mask)] = edgeId;
+        head++;
+    }
+
+    public synchronized long head() {
+        return head;
+    }
+
+    // Copies the edge ids recorded since 'from' into out and returns the new position, or -1 if the entries were already overwritten.
+    synchronized long read(long from, IntBuffer out) {
+        if (head - from > ring.length) return -1;
+        for (long seq = from; seq < head; seq++) out.add(ring[(int) (seq & mask)]);
+        return head;
+    }
+
+    // Small growable int list used to hand changes to the caller without holding the lock while they are applied.
+    static final class IntBuffer {
+        int[] data = new int[64];
+        int size = 0;
+
+        void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        void clear() { size = 0; }
+    }
+}
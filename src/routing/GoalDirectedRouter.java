@@ -0,0 +1,44 @@
+package routing;
+
+import models.CsrGraph;
+
+// A* search skeleton. Subclasses supply a lower bound on the remaining cost to the target; the bound must be consistent
+// with the base edge weights. Congestion only ever adds to an edge's cost, so it then stays admissible for current weights too.
+abstract class GoalDirectedRouter extends AbstractRouter {
+
+    GoalDirectedRouter(CsrGraph graph) {
+        super(graph);
+    }
+
+    // Lower bound on the cost from v to target.
+    protected abstract double potential(int v, int target);
+
+    @Override
+    public int[] route(int source, int target) {
+        SearchSpace s = space(0);
+        s.update(source, 0.0, -1);
+        s.heap.push(source, potential(source, target));
+
+        while (!s.heap.isEmpty()) {
+            int u = s.heap.pop();
+            if (s.isSettled(u)) continue;
+            s.settle(u);
+            if (u == target) break;
+
+            double du = s.distance(u);
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                int v = graph.targets[e];
+                if (s.isSettled(v)) continue;
+                double nd = du + graph.currentWeight(e);
+                if (nd < s.distance(v)) {
+                    double h = potential(v, target);
+                    if (h == Double.POSITIVE_INFINITY) continue; // Target provably unreachable from v
+                    s.update(v, nd, e);
+                    s.heap.push(v, nd + h);
+                }
+            }
+        }
+        countSettled(s.settledCount);
+        return s.isSettled(target) ? forwardPath(s, source, target) : null;
+    }
+}
@@ -0,0 +1,134 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// Lifelong Planning A* (LPA*) run backward from a fixed goal, without a heuristic. g(v) is the cost from v to the goal.
+// Because the goal is the search root, every vehicle heading to the same destination can query the same tree from its own position.
+// When road costs change only the affected part of the tree is repaired, and work can be split across ticks with an expansion budget.
+public class IncrementalRouteTree {
+    private final CsrGraph graph;
+    private final int goal;
+    private final double[] g;
+    private final double[] rhs;
+    private final double[] cost;     // Edge costs as last seen by this tree
+    private final MinHeap open = new MinHeap();
+    private final EdgeChangeLog.IntBuffer changes = new EdgeChangeLog.IntBuffer();
+    private long logPosition;
+
+    public IncrementalRouteTree(CsrGraph graph, int goal, EdgeChangeLog log) {
+        this.graph = graph;
+        this.goal = goal;
+        this.g = new double[graph.nodeCount];
+        this.rhs = new double[graph.nodeCount];
+        this.cost = new double[graph.edgeCount];
+        reset(log);
+    }
+
+    public int getGoal() { return goal; }
+
+    // Drops all search state and starts over from the current edge costs.
+    private void reset(EdgeChangeLog log) {
+        logPosition = log.head();
+        for (int e = 0; e < cost.length; e++) cost[e] = graph.currentWeight(e);
+        Arrays.fill(g, Double.POSITIVE_INFINITY);
+        Arrays.fill(rhs, Double.POSITIVE_INFINITY);
+        open.clear();
+        rhs[goal] = 0.0;
+        open.push(goal, 0.0);
+    }
+
+    // Applies the cost changes recorded since the last sync. Only the tail node of each changed edge needs its rhs recomputed.
+    public void sync(EdgeChangeLog log) {
+        changes.clear();
+        long next = log.read(logPosition, changes);
+        if (next < 0) { // Too far behind: the change log was overwritten
+            reset(log);
+            return;
+        }
+        logPosition = next;
+        for (int i = 0; i < changes.size; i++) {
+            int e = changes.data[i];
+            double now = graph.currentWeight(e);
+            if (now != cost[e]) {
+                cost[e] = now;
+                updateVertex(graph.sources[e]);
+            }
+        }
+    }
+
+    private void updateVertex(int u) {
+        if (u != goal) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                best = Math.min(best, cost[e] + g[graph.targets[e]]);
+            }
+            rhs[u] = best;
+        }
+        if (g[u] != rhs[u]) open.push(u, Math.min(g[u], rhs[u]));
+    }
+
+    // Pops stale heap entries (vertex already consistent, or queued again under a different key).
+    private void dropStale() {
+        while (!open.isEmpty()) {
+            int u = open.peekItem();
+            if (g[u] != rhs[u] && open.peekKey() == Math.min(g[u], rhs[u])) return;
+            open.pop();
+        }
+    }
+
+    // Expands vertices until the cost from 'start' to the goal is final, or the expansion budget runs out.
+    // Returns the number of expansions used, or -1 if the budget ran out first (the search resumes from there next time).
+    public int computeFrom(int start, int budget) {
+        int used = 0;
+        while (true) {
+            dropStale();
+            boolean startSettled = g[start] == rhs[start]
+                    && (open.isEmpty() || open.peekKey() >= Math.min(g[start], rhs[start]));
+            if (startSettled) return used;
+            if (open.isEmpty()) return used;
+            if (used >= budget) return -1;
+
+            int u = open.pop();
+            used++;
+            if (g[u] > rhs[u]) {
+                g[u] = rhs[u]; // Overconsistent: lower g and tell predecessors
+                for (int i = graph.inOffsets[u]; i < graph.inOffsets[u + 1]; i++) updateVertex(graph.sources[graph.inEdges[i]]);
+            } else {
+                g[u] = Double.POSITIVE_INFINITY; // Underconsistent: raise g and recompute u and its predecessors
+                updateVertex(u);
+                for (int i = graph.inOffsets[u]; i < graph.inOffsets[u + 1]; i++) updateVertex(graph.sources[graph.inEdges[i]]);
+            }
+        }
+    }
+
+    // Cost from v to the goal (valid after computeFrom(v, ...) succeeded).
+    public double costFrom(int v) {
+        return g[v];
+    }
+
+    // Follows the cheapest successor from 'start' to the goal. Returns null if the goal is unreachable.
+    public int[] pathFrom(int start) {
+        if (g[start] == Double.POSITIVE_INFINITY) return null;
+        int[] path = new int[16];
+        int size = 0;
+        path[size++] = start;
+        int u = start;
+        while (u != goal) {
+            int bestNext = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                double through = cost[e] + g[graph.targets[e]];
+                if (through < best) {
+                    best = through;
+                    bestNext = graph.targets[e];
+                }
+            }
+            if (bestNext < 0 || size > graph.nodeCount) return null; // Dead end or a cycle from not-yet-final values
+            if (size == path.length) path = Arrays.copyOf(path, size * 2);
+            path[size++] = bestNext;
+            u = bestNext;
+        }
+        return Arrays.copyOf(path, size);
+    }
+}
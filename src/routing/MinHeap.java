@@ -0,0 +1,58 @@
+package routing;
+
+import java.util.Arrays;
+
+// Binary min-heap of (double key, int node) pairs stored in primitive arrays. Uses lazy deletion:
+// a node may be pushed several times and stale entries are skipped by the caller when popped.
+final class MinHeap {
+    private double[] keys = new double[64];
+    private int[] items = new int[64];
+    private int size = 0;
+
+    boolean isEmpty() { return size == 0; }
+    int size() { return size; }
+    void clear() { size = 0; }
+
+    double peekKey() { return keys[0]; }
+    int peekItem() { return items[0]; }
+
+    void push(int item, double key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            items = Arrays.copyOf(items, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            keys[i] = keys[parent];
+            items[i] = items[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        items[i] = item;
+    }
+
+    // Removes the smallest entry and returns its item. The key can be read with peekKey() before calling this.
+    int pop() {
+        int top = items[0];
+        size--;
+        if (size > 0) {
+            double key = keys[size];
+            int item = items[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (key <= keys[child]) break;
+                keys[i] = keys[child];
+                items[i] = items[child];
+                i = child;
+            }
+            keys[i] = key;
+            items[i] = item;
+        }
+        return top;
+    }
+}
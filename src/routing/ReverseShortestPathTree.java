@@ -0,0 +1,64 @@
+package routing;
+
+import java.util.Arrays;
+import models.CsrGraph;
+
+// Shortest-path tree of every node TO a fixed root, built with one Dijkstra over incoming edges using current weights.
+// Once built it is read-only, so any thread can walk it: a return route is just "follow nextEdge until the root".
+public class ReverseShortestPathTree {
+    private final CsrGraph graph;
+    private final int root;
+    private final double[] dist;   // Cost from node to root at build time
+    private final int[] nextEdge;  // First edge on the way from node to root, -1 for the root and unreachable nodes
+
+    public ReverseShortestPathTree(CsrGraph graph, int root) {
+        this(graph, root, null);
+    }
+
+    // Builds from a snapshot of edge weights (edge id -> weight) instead of the live ones; null means live weights.
+    public ReverseShortestPathTree(CsrGraph graph, int root, double[] weights) {
+        this.graph = graph;
+        this.root = root;
+        this.dist = new double[graph.nodeCount];
+        this.nextEdge = new int[graph.nodeCount];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        Arrays.fill(nextEdge, -1);
+
+        MinHeap heap = new MinHeap();
+        dist[root] = 0.0;
+        heap.push(root, 0.0);
+        while (!heap.isEmpty()) {
+            double d = heap.peekKey();
+            int u = heap.pop();
+            if (d > dist[u]) continue;
+            for (int i = graph.inOffsets[u]; i < graph.inOffsets[u + 1]; i++) {
+                int e = graph.inEdges[i];
+                int v = graph.sources[e];
+                double nd = d + (weights != null ? weights[e] : graph.currentWeight(e));
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    nextEdge[v] = e;
+                    heap.push(v, nd);
+                }
+            }
+        }
+    }
+
+    public int getRoot() { return root; }
+
+    public double costToRoot(int from) { return dist[from]; }
+
+    // Node indices from 'from' to the root, or null if the root is unreachable.
+    public int[] pathToRoot(int from) {
+        if (dist[from] == Double.POSITIVE_INFINITY) return null;
+        int length = 1;
+        for (int v = from; v != root; v = graph.targets[nextEdge[v]]) length++;
+        int[] path = new int[length];
+        int i = 0;
+        for (int v = from; ; v = graph.targets[nextEdge[v]]) {
+            path[i++] = v;
+            if (v == root) break;
+        }
+        return path;
+    }
+}
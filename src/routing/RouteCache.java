@@ -0,0 +1,190 @@
+package routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import models.CsrGraph;
+
+// Bounded LRU cache of routes keyed by (source, target), wrapped around another RoutingStrategy.
+// A cached route is trusted for the rest of the congestion epoch it was last validated in. After the engine advances the epoch,
+// the next lookup re-prices the route with current edge weights and keeps it only if its cost drifted less than the tolerance.
+public class RouteCache implements RoutingStrategy {
+    public static final String SIZE_PROPERTY = "traffic.routeCache.size";
+    public static final String TOLERANCE_PROPERTY = "traffic.routeCache.tolerance";
+
+    private final RoutingStrategy delegate;
+    private final CsrGraph graph;
+    private final double tolerance;
+    private final Map<Long, CachedRoute> entries;
+    private volatile long epoch = 0;
+
+    private long hits, misses, evictions, invalidations;
+
+    private static class CachedRoute {
+        final int[] path;
+        final double cost; // Cost when the route was computed; drift is always measured against this
+        long validatedEpoch;
+
+        CachedRoute(int[] path, double cost, long epoch) {
+            this.path = path;
+            this.cost = cost;
+            this.validatedEpoch = epoch;
+        }
+    }
+
+    // capacity = maximum number of cached routes; tolerance = allowed relative cost drift (0.1 = 10%).
+    public RouteCache(RoutingStrategy delegate, CsrGraph graph, int capacity, double tolerance) {
+        this.delegate = delegate;
+        this.graph = graph;
+        this.tolerance = tolerance;
+        this.entries = new LinkedHashMap<Long, CachedRoute>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedRoute> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Wraps the strategy with a cache configured from system properties, or returns it unchanged if the cache size is 0.
+    public static RoutingStrategy wrapFromSystemProperties(RoutingStrategy delegate, CsrGraph graph) {
+        int size = Integer.getInteger(SIZE_PROPERTY, 1024);
+        double tolerance = Double.parseDouble(System.getProperty(TOLERANCE_PROPERTY, "0.15"));
+        return size > 0 ? new RouteCache(delegate, graph, size, tolerance) : delegate;
+    }
+
+    @Override
+    public int[] route(int source, int target) {
+        long now = epoch;
+        int[] path = lookup(source, target, now);
+        if (path != null) return path;
+        path = delegate.route(source, target); // Search outside the lock so concurrent misses don't serialize
+        if (path != null) store(source, target, path, now);
+        return path;
+    }
+
+    // The cached route if it is still valid (a hit), or null (a miss) for a caller that searches some other way and then offer()s
+    // the result, e.g. a one-to-many search for a batch of trips from one origin.
+    public int[] lookup(int source, int target) {
+        return lookup(source, target, epoch);
+    }
+
+    // Caches a route found outside the cache, priced at current weights. It must be a route the delegate could have returned.
+    public void offer(int source, int target, int[] path) {
+        store(source, target, path, epoch);
+    }
+
+    private int[] lookup(int source, int target, long now) {
+        long key = key(source, target);
+        synchronized (this) {
+            CachedRoute cached = entries.get(key);
+            if (cached != null) {
+                if (cached.validatedEpoch == now || withinTolerance(cached)) {
+                    cached.validatedEpoch = now;
+                    hits++;
+                    return cached.path;
+                }
+                entries.remove(key);
+                invalidations++;
+            }
+            misses++;
+        }
+        return null;
+    }
+
+    private void store(int source, int target, int[] path, long now) {
+        CachedRoute fresh = new CachedRoute(path, pathCost(path), now);
+        synchronized (this) {
+            entries.put(key(source, target), fresh);
+        }
+    }
+
+    private static long key(int source, int target) {
+        return ((long) source << 32) | (target & 0xffffffffL);
+    }
+
+    private boolean withinTolerance(CachedRoute cached) {
+        double current = pathCost(cached.path);
+        if (current == Double.POSITIVE_INFINITY) return false; // A road on the route vanished
+        return Math.abs(current - cached.cost) <= tolerance * Math.max(cached.cost, 1e-9);
+    }
+
+    private double pathCost(int[] path) {
+        double cost = 0;
+        for (int i = 0; i + 1 < path.length; i++) {
+            int e = graph.edgeId(path[i], path[i + 1]);
+            if (e < 0) return Double.POSITIVE_INFINITY;
+            cost += graph.currentWeight(e);
+        }
+        return cost;
+    }
+
+    // Starts a new congestion epoch: every cached route must be re-priced once before it is reused.
+    public void advanceEpoch() {
+        epoch++;
+    }
+
+    public long getEpoch() { return epoch; }
+
+    // Copies the cached routes, least recently used first, together with the epoch (for checkpoints). Paths are shared, not copied:
+    // a cached path is never modified.
+    public synchronized Snapshot snapshot() {
+        Snapshot s = new Snapshot(epoch, entries.size());
+        int i = 0;
+        for (Map.Entry<Long, CachedRoute> e : entries.entrySet()) {
+            s.keys[i] = e.getKey();
+            s.paths[i] = e.getValue().path;
+            s.costs[i] = e.getValue().cost;
+            s.validatedEpochs[i] = e.getValue().validatedEpoch;
+            i++;
+        }
+        return s;
+    }
+
+    // Replaces the cache contents and epoch with a snapshot(), restoring the LRU order as well.
+    public synchronized void restore(Snapshot s) {
+        entries.clear();
+        for (int i = 0; i < s.keys.length; i++) entries.put(s.keys[i], new CachedRoute(s.paths[i], s.costs[i], s.validatedEpochs[i]));
+        epoch = s.epoch;
+    }
+
+    public static final class Snapshot {
+        public final long epoch;
+        public final long[] keys;           // (source << 32) | target
+        public final int[][] paths;
+        public final double[] costs;
+        public final long[] validatedEpochs;
+
+        public Snapshot(long epoch, int size) {
+            this.epoch = epoch;
+            keys = new long[size];
+            paths = new int[size][];
+            costs = new double[size];
+            validatedEpochs = new long[size];
+        }
+    }
+
+    public synchronized void clear() { entries.clear(); }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getInvalidations() { return invalidations; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RouteCache[size=%d, hits=%d, misses=%d, evictions=%d, invalidations=%d, epoch=%d]",
+                entries.size(), hits, misses, evictions, invalidations, epoch);
+    }
+
+    public RoutingStrategy getDelegate() { return delegate; }
+
+    @Override
+    public String name() { return "cached-" + delegate.name(); }
+
+    @Override
+    public long settledNodes() { return delegate.settledNodes(); }
+}
@@ -0,0 +1,44 @@
+package routing;
+
+import java.io.IOException;
+import java.util.Random;
+import maps.MapSources;
+import models.CityGraph;
+import models.CsrGraph;
+
+// Command-line benchmark for the routing strategies: runs the same random queries through each one and prints latency and settled nodes,
+// then checks the contraction hierarchy against Dijkstra and reports its preprocessing, customization and query times.
+// Usage: java -cp bin routing.RoutingBenchmark [queries] [seed] [map spec, e.g. generate:grid:100000]
+public class RoutingBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int queries = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        run(MapSources.load(args.length > 2 ? args[2] : "builtin"), queries, seed);
+    }
+
+    public static void run(CityGraph city, int queries, long seed) {
+        CsrGraph graph = city.csr;
+        System.out.println("Graph: " + graph.nodeCount + " nodes, " + graph.edgeCount + " edges");
+
+        String[] names = {"dijkstra", "astar", "bidirectional", "alt", "cch"};
+        for (String name : names) {
+            long built = System.nanoTime();
+            RoutingStrategy strategy = RoutingStrategies.create(name, graph);
+            built = System.nanoTime() - built;
+
+            Random random = new Random(seed);
+            long started = System.nanoTime();
+            int found = 0;
+            for (int i = 0; i < queries; i++) {
+                if (strategy.route(random.nextInt(graph.nodeCount), random.nextInt(graph.nodeCount)) != null) found++;
+            }
+            long elapsed = System.nanoTime() - started;
+            System.out.printf("%-14s setup=%8.1f ms  query=%8.2f us  settled/query=%8.1f  found=%d/%d%n",
+                    name, built / 1e6, elapsed / 1e3 / queries, strategy.settledNodes() / (double) queries, found, queries);
+        }
+
+        ContractionHierarchyRouter cch = new ContractionHierarchyRouter(graph);
+        System.out.println(cch.verify(new DijkstraRouter(graph), Math.min(queries, 2000), seed));
+    }
+}
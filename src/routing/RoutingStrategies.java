@@ -0,0 +1,26 @@
+package routing;
+
+import models.CsrGraph;
+
+// Creates routing strategies by name. The simulation picks one at startup from the "traffic.routing" system property
+// (e.g. -Dtraffic.routing=astar); Dijkstra is the default.
+public final class RoutingStrategies {
+    public static final String PROPERTY = "traffic.routing";
+
+    private RoutingStrategies() {}
+
+    public static RoutingStrategy create(String name, CsrGraph graph) {
+        switch (name.trim().toLowerCase()) {
+            case "dijkstra": return new DijkstraRouter(graph);
+            case "astar": case "a*": return new AStarRouter(graph);
+            case "bidirectional": case "bidijkstra": return new BidirectionalDijkstraRouter(graph);
+            case "alt": case "landmarks": return new AltRouter(graph);
+            case "cch": case "ch": return new ContractionHierarchyRouter(graph);
+            default: throw new IllegalArgumentException("Unknown routing strategy: " + name);
+        }
+    }
+
+    public static RoutingStrategy fromSystemProperty(CsrGraph graph) {
+        return create(System.getProperty(PROPERTY, "dijkstra"), graph);
+    }
+}
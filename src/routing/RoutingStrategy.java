@@ -0,0 +1,15 @@
+package routing;
+
+// Point-to-point route search over the compact CSR graph. Implementations must be safe to call from several threads at once
+// (spawns come from the GUI, the traffic generator and the simulation tick).
+public interface RoutingStrategy {
+
+    // Returns the dense node indices of the cheapest path from source to target (both inclusive), or null if the target is unreachable.
+    int[] route(int source, int target);
+
+    // Short name used for selection and logging (e.g. "astar").
+    String name();
+
+    // Total number of nodes settled by all queries so far. Used to compare how much of the graph each strategy explores.
+    long settledNodes();
+}
@@ -0,0 +1,53 @@
+package routing;
+
+import java.util.Arrays;
+
+// Per-thread scratch state for one search direction. Distances and parents are versioned with a stamp array,
+// so starting a new query is O(1) instead of clearing arrays sized to the whole graph.
+final class SearchSpace {
+    final double[] dist;
+    final int[] parentEdge;
+    private final int[] seenStamp;
+    private final int[] settledStamp;
+    private int version = 0;
+    final MinHeap heap = new MinHeap();
+    int settledCount;
+
+    SearchSpace(int nodeCount) {
+        dist = new double[nodeCount];
+        parentEdge = new int[nodeCount];
+        seenStamp = new int[nodeCount];
+        settledStamp = new int[nodeCount];
+    }
+
+    void reset() {
+        version++;
+        if (version == Integer.MAX_VALUE) { // Stamp overflow: clear once every 2^31 queries
+            Arrays.fill(seenStamp, 0);
+            Arrays.fill(settledStamp, 0);
+            version = 1;
+        }
+        heap.clear();
+        settledCount = 0;
+    }
+
+    double distance(int v) {
+        return seenStamp[v] == version ? dist[v] : Double.POSITIVE_INFINITY;
+    }
+
+    // Records a tentative distance and the edge it was reached through (-1 for the search root).
+    void update(int v, double d, int edge) {
+        seenStamp[v] = version;
+        dist[v] = d;
+        parentEdge[v] = edge;
+    }
+
+    boolean isSettled(int v) {
+        return settledStamp[v] == version;
+    }
+
+    void settle(int v) {
+        settledStamp[v] = version;
+        settledCount++;
+    }
+}
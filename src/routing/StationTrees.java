@@ -0,0 +1,110 @@
+package routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import models.CsrGraph;
+
+// Keeps a ReverseShortestPathTree for each emergency station so returning vehicles never search inside the tick.
+// Trees are rebuilt together on a background thread when the engine starts a new congestion epoch, then swapped in atomically.
+// Reproducible runs call useSnapshot() instead: each epoch's trees are built from a weight snapshot on the same background thread,
+// and the first vehicle that needs a station's tree waits for that build, so a route never depends on how far a rebuild got.
+public class StationTrees {
+    private final CsrGraph graph;
+    private final int[] stations;
+    private volatile ReverseShortestPathTree[] trees;
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+    private final ExecutorService refresher;
+    // Station position -> tree build from the weights of the last useSnapshot(); null while trees refresh in the background
+    private List<Future<ReverseShortestPathTree>> snapshotTrees;
+
+    public StationTrees(CsrGraph graph, int[] stations) {
+        this.graph = graph;
+        this.stations = stations.clone();
+        this.trees = build();
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "station-trees");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private ReverseShortestPathTree[] build() {
+        ReverseShortestPathTree[] fresh = new ReverseShortestPathTree[stations.length];
+        for (int i = 0; i < stations.length; i++) fresh[i] = new ReverseShortestPathTree(graph, stations[i]);
+        return fresh;
+    }
+
+    // Schedules a rebuild from current edge weights. Requests made while one is already queued are merged.
+    public void requestRefresh() {
+        if (!refreshPending.compareAndSet(false, true)) return;
+        refresher.execute(() -> {
+            refreshPending.set(false);
+            trees = build();
+        });
+    }
+
+    // Rebuilds the trees on the calling thread, for runs that must not depend on when the background rebuild finishes.
+    public void refresh() {
+        trees = build();
+    }
+
+    // Switches to trees built from the given weights (edge id -> weight, taken at an epoch boundary, never modified afterwards).
+    // The builds are queued on the background thread at once; builds of the previous snapshot that have not started are dropped.
+    public synchronized void useSnapshot(double[] weights) {
+        if (snapshotTrees != null) {
+            for (Future<ReverseShortestPathTree> build : snapshotTrees) build.cancel(false);
+        }
+        List<Future<ReverseShortestPathTree>> builds = new ArrayList<>(stations.length);
+        for (int station : stations) builds.add(refresher.submit(() -> new ReverseShortestPathTree(graph, station, weights)));
+        snapshotTrees = builds;
+    }
+
+    public boolean isStation(int node) {
+        for (int s : stations) if (s == node) return true;
+        return false;
+    }
+
+    public int[] getStations() { return stations.clone(); }
+
+    // Route from 'from' back to the given station by walking its tree, or null if it is not a station or unreachable.
+    public int[] routeToStation(int from, int station) {
+        List<Future<ReverseShortestPathTree>> builds;
+        synchronized (this) {
+            builds = snapshotTrees;
+        }
+        if (builds != null) {
+            for (int i = 0; i < stations.length; i++) {
+                if (stations[i] == station) return awaitTree(builds.get(i)).pathToRoot(from);
+            }
+            return null;
+        }
+        ReverseShortestPathTree[] current = trees;
+        for (ReverseShortestPathTree tree : current) {
+            if (tree.getRoot() == station) return tree.pathToRoot(from);
+        }
+        return null;
+    }
+
+    // Waits for a snapshot build, normally long finished by the time a vehicle returns.
+    private static ReverseShortestPathTree awaitTree(Future<ReverseShortestPathTree> build) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return build.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Station tree build failed", e);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import models.CompiledRoute;
+import routing.RouteCache;
+
+// Complete engine state at one tick boundary: clock, counters and random state, routing caches, traffic lights, every vehicle with its slot, path and
+// progress, the contents of every edge queue in leaving order, and the bus waves still to come. SimulationEngine.checkpoint() copies
+// the live state under the store lock (array copies and references only, since compiled routes are immutable), so the tick
+// is held up for a copy, not for I/O. write() and read() then run on any thread.
+// File layout (little endian): header (magic, version, map node/edge counts, clock, counters, random state, demand, user), routing, lights,
+// path table (shared paths are written once), vehicles by slot with the free list, queues as slot lists, bus waves.
+public final class Checkpoint {
+    static final int MAGIC = 0x50434353; // "SCCP"
+    static final int VERSION = 3;
+
+    // Engine
+    int nodeCount, edgeCount;
+    long tickCount;
+    double pendingTime;
+    int carIdCounter;
+    long seed;
+    byte[] random;              // Serialized java.util.Random, so the continuation draws the same numbers
+    boolean generator;          // Background traffic was running
+    String demandSpec;          // DemandModel text, null if there was none
+    double[] demandCredits = new double[0];
+    int demandNextTrip;
+    long demandTrips;
+    String userRole = "", userId = "";
+    boolean deterministic;      // Reproducible run: routing below is restored too, so the continuation is exact
+
+    // Routing: weights the current congestion epoch was priced with (reproducible runs only) and the route cache in LRU order
+    double[] epochWeights;
+    RouteCache.Snapshot routeCache;
+
+    // Lights, by position in the engine's intersection list
+    int[] lightNodes;
+    boolean[] lightGreen;
+    int[] lightTimers;
+    long[] lightUpdates;
+
+    // Vehicles: the store's slot layout, then one entry per live vehicle in slot order
+    int highWater;
+    int[] freeSlots;
+    int[] slots;
+    String[] ids;
+    byte[] types;
+    int[] destinations;
+    int[] pathRefs;             // Index into 'paths'
+    int[] pathIndices;
+    double[] progress;
+    boolean[] returning;
+    long[] departTicks;
+
+    // Paths: the node arrays of the vehicles' compiled routes, each shared route once
+    List<CompiledRoute> routes = new ArrayList<>();
+    int[][] paths;              // Set by read(), or by encodePaths() before writing
+
+    // Queues: edge id -> slots in leaving order
+    int[] queueEdges;
+    int[][] queueSlots;
+
+    // Bus waves: due tick, wave number, routes (path table indices)
+    long[] waveDue;
+    int[] waveNumbers;
+    int[][] waveRoutes;
+
+    private final Map<CompiledRoute, Integer> pathIds = new IdentityHashMap<>();
+
+    Checkpoint() {}
+
+    // Numbers the routes while capturing; vehicles sharing an interned route share its entry.
+    int pathRef(CompiledRoute route) {
+        Integer ref = pathIds.get(route);
+        if (ref == null) {
+            ref = routes.size();
+            pathIds.put(route, ref);
+            routes.add(route);
+        }
+        return ref;
+    }
+
+    private void encodePaths() {
+        if (paths != null) return;
+        paths = new int[routes.size()][];
+        for (int i = 0; i < paths.length; i++) paths[i] = routes.get(i).nodes; // Immutable, so no copy is needed
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public int getVehicleCount() {
+        return slots.length;
+    }
+
+    // Writes the checkpoint through a buffered file channel.
+    public void write(Path file) throws IOException {
+        encodePaths();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Out out = new Out(channel);
+            out.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(edgeCount);
+            out.putLong(tickCount).putDouble(pendingTime).putInt(carIdCounter).putLong(seed);
+            out.putBytes(random).putByte(generator ? 1 : 0).putByte(demandSpec != null ? 1 : 0);
+            if (demandSpec != null) {
+                out.putString(demandSpec).putInt(demandCredits.length);
+                for (double credit : demandCredits) out.putDouble(credit);
+                out.putInt(demandNextTrip).putLong(demandTrips);
+            }
+            out.putString(userRole).putString(userId).putByte(deterministic ? 1 : 0);
+
+            out.putInt(epochWeights == null ? -1 : epochWeights.length);
+            if (epochWeights != null) for (double w : epochWeights) out.putDouble(w);
+            out.putInt(routeCache == null ? -1 : routeCache.keys.length);
+            if (routeCache != null) {
+                out.putLong(routeCache.epoch);
+                for (int i = 0; i < routeCache.keys.length; i++) {
+                    out.putLong(routeCache.keys[i]).putInts(routeCache.paths[i]).putDouble(routeCache.costs[i]).putLong(routeCache.validatedEpochs[i]);
+                }
+            }
+
+            out.putInt(lightNodes.length);
+            for (int i = 0; i < lightNodes.length; i++) {
+                out.putInt(lightNodes[i]).putByte(lightGreen[i] ? 1 : 0).putInt(lightTimers[i]).putLong(lightUpdates[i]);
+            }
+
+            out.putInt(paths.length);
+            for (int[] path : paths) out.putInts(path);
+
+            out.putInt(highWater).putInts(freeSlots).putInt(slots.length);
+            for (int i = 0; i < slots.length; i++) {
+                out.putInt(slots[i]).putString(ids[i]).putByte(types[i]).putInt(destinations[i]).putInt(pathRefs[i])
+                        .putInt(pathIndices[i]).putDouble(progress[i]).putByte(returning[i] ? 1 : 0).putLong(departTicks[i]);
+            }
+
+            out.putInt(queueEdges.length);
+            for (int i = 0; i < queueEdges.length; i++) out.putInt(queueEdges[i]).putInts(queueSlots[i]);
+
+            out.putInt(waveDue.length);
+            for (int i = 0; i < waveDue.length; i++) out.putLong(waveDue[i]).putInt(waveNumbers[i]).putInts(waveRoutes[i]);
+            out.flush();
+        }
+    }
+
+    // Reads a checkpoint by memory-mapping the file.
+    public static Checkpoint read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 8 || channel.size() > Integer.MAX_VALUE) throw new IOException("Not a checkpoint file: " + file);
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC) throw new IOException("Not a checkpoint file: " + file);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+
+            Checkpoint c = new Checkpoint();
+            c.nodeCount = in.getInt();
+            c.edgeCount = in.getInt();
+            c.tickCount = in.getLong();
+            c.pendingTime = in.getDouble();
+            c.carIdCounter = in.getInt();
+            c.seed = in.getLong();
+            c.random = getBytes(in);
+            c.generator = in.get() != 0;
+            if (in.get() != 0) {
+                c.demandSpec = getString(in);
+                c.demandCredits = new double[in.getInt()];
+                for (int i = 0; i < c.demandCredits.length; i++) c.demandCredits[i] = in.getDouble();
+                c.demandNextTrip = in.getInt();
+                c.demandTrips = in.getLong();
+            }
+            c.userRole = getString(in);
+            c.userId = getString(in);
+            c.deterministic = in.get() != 0;
+
+            int weights = in.getInt();
+            if (weights >= 0) {
+                c.epochWeights = new double[weights];
+                in.asDoubleBuffer().get(c.epochWeights);
+                in.position(in.position() + 8 * weights);
+            }
+            int routes = in.getInt();
+            if (routes >= 0) {
+                c.routeCache = new RouteCache.Snapshot(in.getLong(), routes);
+                for (int i = 0; i < routes; i++) {
+                    c.routeCache.keys[i] = in.getLong();
+                    c.routeCache.paths[i] = getInts(in);
+                    c.routeCache.costs[i] = in.getDouble();
+                    c.routeCache.validatedEpochs[i] = in.getLong();
+                }
+            }
+
+            int lights = in.getInt();
+            c.lightNodes = new int[lights];
+            c.lightGreen = new boolean[lights];
+            c.lightTimers = new int[lights];
+            c.lightUpdates = new long[lights];
+            for (int i = 0; i < lights; i++) {
+                c.lightNodes[i] = in.getInt();
+                c.lightGreen[i] = in.get() != 0;
+                c.lightTimers[i] = in.getInt();
+                c.lightUpdates[i] = in.getLong();
+            }
+
+            c.paths = new int[in.getInt()][];
+            for (int i = 0; i < c.paths.length; i++) c.paths[i] = getInts(in);
+
+            c.highWater = in.getInt();
+            c.freeSlots = getInts(in);
+            int vehicles = in.getInt();
+            c.slots = new int[vehicles];
+            c.ids = new String[vehicles];
+            c.types = new byte[vehicles];
+            c.destinations = new int[vehicles];
+            c.pathRefs = new int[vehicles];
+            c.pathIndices = new int[vehicles];
+            c.progress = new double[vehicles];
+            c.returning = new boolean[vehicles];
+            c.departTicks = new long[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                c.slots[i] = in.getInt();
+                c.ids[i] = getString(in);
+                c.types[i] = in.get();
+                c.destinations[i] = in.getInt();
+                c.pathRefs[i] = in.getInt();
+                c.pathIndices[i] = in.getInt();
+                c.progress[i] = in.getDouble();
+                c.returning[i] = in.get() != 0;
+                c.departTicks[i] = in.getLong();
+            }
+
+            int queues = in.getInt();
+            c.queueEdges = new int[queues];
+            c.queueSlots = new int[queues][];
+            for (int i = 0; i < queues; i++) {
+                c.queueEdges[i] = in.getInt();
+                c.queueSlots[i] = getInts(in);
+            }
+
+            int waves = in.getInt();
+            c.waveDue = new long[waves];
+            c.waveNumbers = new int[waves];
+            c.waveRoutes = new int[waves][];
+            for (int i = 0; i < waves; i++) {
+                c.waveDue[i] = in.getLong();
+                c.waveNumbers[i] = in.getInt();
+                c.waveRoutes[i] = getInts(in);
+            }
+            return c;
+        }
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * values.length);
+        return values;
+    }
+
+    private static byte[] getBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static String getString(ByteBuffer in) {
+        return new String(getBytes(in), StandardCharsets.UTF_8);
+    }
+
+    // Little-endian writer over a direct buffer that is drained to the channel whenever it fills up.
+    private static final class Out {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        Out(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        Out putInt(int v) throws IOException { ensure(4); buffer.putInt(v); return this; }
+        Out putLong(long v) throws IOException { ensure(8); buffer.putLong(v); return this; }
+        Out putDouble(double v) throws IOException { ensure(8); buffer.putDouble(v); return this; }
+        Out putByte(int v) throws IOException { ensure(1); buffer.put((byte) v); return this; }
+
+        Out putInts(int[] values) throws IOException {
+            putInt(values.length);
+            for (int v : values) putInt(v);
+            return this;
+        }
+
+        Out putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            for (int i = 0; i < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(buffer.remaining(), bytes.length - i);
+                buffer.put(bytes, i, n);
+                i += n;
+            }
+            return this;
+        }
+
+        Out putString(String s) throws IOException {
+            return putBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
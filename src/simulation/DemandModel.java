@@ -0,0 +1,260 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import models.CityGraph;
+import models.Node;
+import models.NodeType;
+import models.VehicleType;
+
+// Background traffic as an origin-destination (OD) matrix over node types, run on the simulation clock.
+// Each flow sends vehicles of one type from nodes of one type to nodes of another at a rate in trips per hour, scaled by the
+// time-of-day profile of its origin type. Arrivals are either Poisson (a random count per tick) or scheduled (evenly spaced);
+// fixed trips can be added at given times. Every tick the engine collects the trips departing at that tick boundary and spawns
+// them as one batch, so route searches are grouped by origin. Origins and destinations are drawn uniformly from the nodes of
+// their type with the engine's seeded Random, so a seeded run is reproducible.
+// Demand files (-Dtraffic.demand=<file>) have one record per line, comma separated; blank lines and lines starting with '#' are ignored:
+//   flow,<FROM TYPE>,<TO TYPE>,<VEHICLE>,<trips per hour>[,poisson|scheduled]   one OD matrix entry (default poisson)
+//   profile,<TYPE>,<f0>,...,<f23>       hourly factors for trips starting at nodes of TYPE, interpolated linearly (default 1)
+//   trip,<seconds>,<from id>,<to id>,<VEHICLE>   one trip at a fixed simulation time
+//   start,<hour>                        time of day at simulation time 0, e.g. 7.5 = 07:30 (default 0)
+//   scale,<factor>                      multiplies every flow rate (-Dtraffic.demand.scale multiplies it again)
+public final class DemandModel {
+    public static final String PROPERTY = "traffic.demand";
+    public static final String SCALE_PROPERTY = "traffic.demand.scale";
+
+    // The default trickle: one car per simulated second between apartments, and an emergency call for each service every ten.
+    static final String STANDARD = String.join("\n",
+            "flow,APARTMENT,APARTMENT,CAR,3600,scheduled",
+            "flow,POLICE,APARTMENT,POLICE_CAR,360,scheduled",
+            "flow,HOSPITAL,APARTMENT,AMBULANCE,360,scheduled",
+            "flow,FIRE_STATION,APARTMENT,FIRE_TRUCK,360,scheduled");
+
+    private static final int POISSON_CHUNK = 30; // exp(-30) is still far from underflow; larger means are summed in chunks
+
+    private final String spec;
+    private final List<Flow> flows = new ArrayList<>();
+    private final double[][] profiles = new double[NodeType.values().length][]; // Type ordinal -> 24 factors, null = flat
+    private double startHour = 0;
+    private double scale = 1;
+    private final List<ScheduledTrip> trips = new ArrayList<>();
+    private int nextTrip = 0;
+    private long generated = 0;
+
+    private static final class Flow {
+        final Node[] origins, destinations;
+        final NodeType originType;
+        final VehicleType vehicle;
+        final double perHour;
+        final boolean poisson;
+        double credit; // Scheduled flows: trips owed but not yet sent (fractional)
+
+        Flow(Node[] origins, Node[] destinations, NodeType originType, VehicleType vehicle, double perHour, boolean poisson) {
+            this.origins = origins;
+            this.destinations = destinations;
+            this.originType = originType;
+            this.vehicle = vehicle;
+            this.perHour = perHour;
+            this.poisson = poisson;
+        }
+    }
+
+    private static final class ScheduledTrip {
+        final long tick;
+        final Node from, to;
+        final VehicleType vehicle;
+
+        ScheduledTrip(long tick, Node from, Node to, VehicleType vehicle) {
+            this.tick = tick;
+            this.from = from;
+            this.to = to;
+            this.vehicle = vehicle;
+        }
+    }
+
+    private DemandModel(String spec) {
+        this.spec = spec;
+    }
+
+    // The default trickle of background traffic on this map.
+    public static DemandModel standard(CityGraph graph) {
+        return parse(STANDARD, graph, "standard demand");
+    }
+
+    // The demand given with -Dtraffic.demand (and -Dtraffic.demand.scale), or the standard trickle.
+    public static DemandModel fromSystemProperties(CityGraph graph) throws IOException {
+        String file = System.getProperty(PROPERTY);
+        String text = (file == null) ? STANDARD : new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+        String scale = System.getProperty(SCALE_PROPERTY);
+        if (scale != null) text += "\nscale," + Double.parseDouble(scale);
+        return parse(text, graph, file == null ? "standard demand" : file);
+    }
+
+    public static DemandModel parse(String text, CityGraph graph, String source) {
+        DemandModel model = new DemandModel(text);
+        String[] lines = text.split("\r?\n");
+        for (int lineNo = 1; lineNo <= lines.length; lineNo++) {
+            String line = lines[lineNo - 1].trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split(",");
+            for (int i = 0; i < f.length; i++) f[i] = f[i].trim();
+            try {
+                switch (f[0].toLowerCase()) {
+                    case "flow": {
+                        expect(f, 5);
+                        NodeType from = NodeType.valueOf(f[1].toUpperCase());
+                        NodeType to = NodeType.valueOf(f[2].toUpperCase());
+                        boolean poisson = f.length < 6 || parseArrivals(f[5]);
+                        model.flows.add(new Flow(nodes(graph, from), nodes(graph, to), from, VehicleType.valueOf(f[3].toUpperCase()),
+                                nonNegative(Double.parseDouble(f[4])), poisson));
+                        break;
+                    }
+                    case "profile": {
+                        expect(f, 26);
+                        double[] factors = new double[24];
+                        for (int h = 0; h < 24; h++) factors[h] = nonNegative(Double.parseDouble(f[h + 2]));
+                        model.profiles[NodeType.valueOf(f[1].toUpperCase()).ordinal()] = factors;
+                        break;
+                    }
+                    case "trip": {
+                        expect(f, 5);
+                        long tick = Math.round(Double.parseDouble(f[1]) / SimulationEngine.TICK_SECONDS);
+                        Node from = graph.nodes.get(Integer.parseInt(f[2]));
+                        Node to = graph.nodes.get(Integer.parseInt(f[3]));
+                        if (from == null || to == null) throw new IllegalArgumentException("unknown node");
+                        model.trips.add(new ScheduledTrip(tick, from, to, VehicleType.valueOf(f[4].toUpperCase())));
+                        break;
+                    }
+                    case "start":
+                        expect(f, 2);
+                        model.startHour = Double.parseDouble(f[1]);
+                        break;
+                    case "scale":
+                        expect(f, 2);
+                        model.scale *= nonNegative(Double.parseDouble(f[1]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown record type '" + f[0] + "'");
+                }
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException(source + ":" + lineNo + ": " + e.getMessage(), e);
+            }
+        }
+        model.trips.sort((a, b) -> Long.compare(a.tick, b.tick)); // Stable, so trips at the same time keep their file order
+        return model;
+    }
+
+    private static void expect(String[] f, int fields) {
+        if (f.length < fields) throw new IllegalArgumentException("expected " + fields + " fields, got " + f.length);
+    }
+
+    private static double nonNegative(double v) {
+        if (!(v >= 0)) throw new IllegalArgumentException("expected a non-negative number, got " + v);
+        return v;
+    }
+
+    private static boolean parseArrivals(String s) {
+        switch (s.toLowerCase()) {
+            case "poisson": return true;
+            case "scheduled": return false;
+            default: throw new IllegalArgumentException("arrivals must be poisson or scheduled, got '" + s + "'");
+        }
+    }
+
+    private static Node[] nodes(CityGraph graph, NodeType type) {
+        return graph.nodesOfType(type).toArray(new Node[0]);
+    }
+
+    // Adds the trips departing at the boundary before tick 'tick' to 'out', drawing counts and endpoints from 'random'.
+    // Trips whose origin and destination coincide are dropped.
+    public void arrivals(long tick, Random random, List<TripRequest> out) {
+        double hour = startHour + tick * SimulationEngine.TICK_SECONDS / 3600.0;
+        int before = out.size();
+        for (Flow flow : flows) {
+            if (flow.origins.length == 0 || flow.destinations.length == 0) continue;
+            double mean = flow.perHour * scale * factor(flow.originType, hour) * SimulationEngine.TICK_SECONDS / 3600.0;
+            int count;
+            if (flow.poisson) {
+                count = poisson(mean, random);
+            } else {
+                flow.credit += mean;
+                count = (int) (flow.credit + 1e-9); // Tolerates the rounding of a rate that divides the tick evenly
+                flow.credit = Math.max(0, flow.credit - count);
+            }
+            for (int i = 0; i < count; i++) {
+                Node from = flow.origins[random.nextInt(flow.origins.length)];
+                Node to = flow.destinations[random.nextInt(flow.destinations.length)];
+                if (from != to) out.add(new TripRequest(from, to, flow.vehicle));
+            }
+        }
+        while (nextTrip < trips.size() && trips.get(nextTrip).tick <= tick) {
+            ScheduledTrip t = trips.get(nextTrip++);
+            if (t.from != t.to) out.add(new TripRequest(t.from, t.to, t.vehicle));
+        }
+        generated += out.size() - before;
+    }
+
+    // Time-of-day factor of an origin type at a (fractional) hour since midnight of day 0.
+    private double factor(NodeType type, double hour) {
+        double[] profile = profiles[type.ordinal()];
+        if (profile == null) return 1;
+        double h = ((hour % 24) + 24) % 24;
+        int i = (int) h;
+        double frac = h - i;
+        return profile[i] + (profile[(i + 1) % 24] - profile[i]) * frac;
+    }
+
+    // Poisson-distributed count with the given mean (Knuth's product of uniforms, summed over chunks for large means).
+    static int poisson(double mean, Random random) {
+        int count = 0;
+        while (mean > 0) {
+            double chunk = Math.min(mean, POISSON_CHUNK);
+            mean -= chunk;
+            double limit = Math.exp(-chunk);
+            double product = random.nextDouble();
+            while (product > limit) {
+                count++;
+                product *= random.nextDouble();
+            }
+        }
+        return count;
+    }
+
+    // Text this model was parsed from (with any scale appended), so a checkpoint can rebuild it.
+    public String getSpec() {
+        return spec;
+    }
+
+    public long getTripsGenerated() {
+        return generated;
+    }
+
+    // Progress that a checkpoint has to carry: the scheduled flows' credits, the next fixed trip and the trip count.
+    double[] credits() {
+        double[] credits = new double[flows.size()];
+        for (int i = 0; i < credits.length; i++) credits[i] = flows.get(i).credit;
+        return credits;
+    }
+
+    void restoreProgress(double[] credits, int nextTrip, long generated) {
+        if (credits.length != flows.size()) throw new IllegalArgumentException("Demand progress does not match its " + flows.size() + " flows");
+        for (int i = 0; i < credits.length; i++) flows.get(i).credit = credits[i];
+        this.nextTrip = nextTrip;
+        this.generated = generated;
+    }
+
+    int nextTrip() {
+        return nextTrip;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DemandModel[%d flows, %d fixed trips, scale %s, %d trips generated]", flows.size(), trips.size(),
+                Double.toString(scale), generated);
+    }
+}
@@ -0,0 +1,125 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import models.*;
+import routing.EdgeChangeLog;
+import routing.IncrementalRouteTree;
+
+// Opt-in rerouting of vehicles that are already driving. Each destination gets an incremental (LPA*) tree that is repaired from the
+// log of queue changes instead of being recomputed. Every tick a few vehicles are checked round-robin, and a vehicle switches to the
+// new route only if it is clearly cheaper than the rest of its current one. Work per tick is capped so the tick loop is never stretched.
+public class DynamicRerouter {
+    private final CsrGraph graph;
+    private final EdgeChangeLog changeLog = new EdgeChangeLog(1 << 16);
+    private final Map<Integer, IncrementalRouteTree> trees;
+    private final int maxVehiclesPerTick;
+    private final int maxExpansionsPerTick;
+    private final double minImprovement; // Required relative saving before a vehicle switches route (avoids flapping)
+    private int cursor = 0;
+    private long checks = 0, reroutes = 0;
+
+    public DynamicRerouter(CsrGraph graph, int maxTrees, int maxVehiclesPerTick, int maxExpansionsPerTick, double minImprovement) {
+        this.graph = graph;
+        this.maxVehiclesPerTick = maxVehiclesPerTick;
+        this.maxExpansionsPerTick = maxExpansionsPerTick;
+        this.minImprovement = minImprovement;
+        this.trees = new LinkedHashMap<Integer, IncrementalRouteTree>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, IncrementalRouteTree> eldest) {
+                return size() > maxTrees;
+            }
+        };
+    }
+
+    public static DynamicRerouter fromSystemProperties(CsrGraph graph) {
+        return new DynamicRerouter(graph,
+                Integer.getInteger("traffic.reroute.trees", 16),
+                Integer.getInteger("traffic.reroute.vehiclesPerTick", 32),
+                Integer.getInteger("traffic.reroute.expansionsPerTick", 20000),
+                Double.parseDouble(System.getProperty("traffic.reroute.minImprovement", "0.1")));
+    }
+
+    // Called whenever a vehicle enters or leaves a road, since that changes the road's cost.
+    public void edgeChanged(Edge e) {
+        if (e.id >= 0) changeLog.record(e.id);
+    }
+
+    // Forgets all search state (e.g. after every queue was cleared).
+    public synchronized void reset() {
+        trees.clear();
+        cursor = 0;
+    }
+
+    // Checks up to maxVehiclesPerTick vehicles, spending at most maxExpansionsPerTick search steps. Runs on the simulation thread.
+    // The cursor walks the store's slots round-robin, skipping free ones.
+    public synchronized void tick(VehicleStore vehicles) {
+        int budget = maxExpansionsPerTick;
+        int checked = 0;
+        int scanned = 0;
+        int slots = vehicles.highWater();
+        while (checked < maxVehiclesPerTick && budget > 0 && scanned < slots) {
+            if (cursor >= slots) cursor = 0;
+            Vehicle v = vehicles.handles[cursor];
+            scanned++;
+            if (v == null || v.type == VehicleType.BUS || !v.isActive()) { // Buses keep their fixed lines
+                cursor++;
+                continue;
+            }
+            int used = tryReroute(vehicles, v, budget);
+            if (used < 0) break; // Out of budget mid-search; the tree keeps its progress and this vehicle is retried next tick
+            budget -= used;
+            checked++;
+            cursor++;
+        }
+    }
+
+    // Returns the number of expansions used, or -1 if the budget ran out before the route could be decided.
+    private int tryReroute(VehicleStore vehicles, Vehicle v, int budget) {
+        CompiledRoute route = v.route;
+        int nextIndex = v.pathIndex() + 1;
+        if (route == null || nextIndex >= route.length() - 1) return 0; // Already on the last road
+
+        int from = route.nodes[nextIndex];
+        int goal = route.nodes[route.length() - 1];
+
+        IncrementalRouteTree tree = trees.get(goal);
+        if (tree == null) {
+            tree = new IncrementalRouteTree(graph, goal, changeLog);
+            trees.put(goal, tree);
+        } else {
+            tree.sync(changeLog);
+        }
+
+        int used = tree.computeFrom(from, budget);
+        if (used < 0) return -1;
+        checks++;
+
+        double fresh = tree.costFrom(from);
+        double current = remainingCost(route, nextIndex);
+        if (fresh < current * (1.0 - minImprovement)) {
+            int[] detour = tree.pathFrom(from);
+            if (detour != null) {
+                int[] spliced = Arrays.copyOf(route.nodes, nextIndex + detour.length); // Keeps the road it is on, so its cursor stays valid
+                System.arraycopy(detour, 1, spliced, nextIndex + 1, detour.length - 1);
+                v.route = vehicles.routes().intern(spliced); // Swap in one step so the renderer never sees a half-built route
+                reroutes++;
+            }
+        }
+        return used;
+    }
+
+    private double remainingCost(CompiledRoute route, int fromIndex) {
+        double cost = 0;
+        for (int i = fromIndex; i < route.edges.length; i++) {
+            int e = route.edges[i];
+            if (e < 0) return Double.POSITIVE_INFINITY;
+            cost += graph.currentWeight(e);
+        }
+        return cost;
+    }
+
+    public synchronized long getChecks() { return checks; }
+    public synchronized long getReroutes() { return reroutes; }
+}
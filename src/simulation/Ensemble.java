@@ -0,0 +1,322 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import models.CityGraph;
+import models.CsrGraph;
+import models.Vehicle;
+import models.VehicleType;
+
+// Monte Carlo ensemble: runs N independent headless replicas of one scenario, each seeded differently, on a bounded thread pool,
+// and reports the per-road queue lengths and trip times as means with 95% confidence intervals over the replicas.
+// Every replica gets its own CityGraph from CityGraph.replicate(): fresh Node/Edge objects for its lights and queues, sharing the
+// compiled CSR arrays of the template map read-only. A replica runs start to finish on one pool thread with the classic
+// single-threaded tick and nothing is shared between replicas while they tick, so throughput grows with the pool size up to the
+// number of cores. Each replica folds its time-averaged queue lengths into the per-road accumulators when it is done, so the
+// memory for the statistics does not grow with the replica count.
+// Replica i uses seed baseSeed + i, so an ensemble is reproducible and can be extended with more replicas later.
+public final class Ensemble {
+    static final int SAMPLE_TICKS = SimulationEngine.CONGESTION_EPOCH_TICKS; // Queue lengths are sampled once per simulated second
+
+    // Two-sided 95% Student t quantiles for 1..30 degrees of freedom
+    private static final double[] T95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160, 2.145, 2.131,
+        2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    private final CityGraph map;
+    private final int replicas;
+    private final long baseSeed;
+    private final int ticks;
+    private final int threads;
+
+    public Ensemble(CityGraph map, int replicas, long baseSeed, int ticks, int threads) {
+        if (replicas < 1) throw new IllegalArgumentException("An ensemble needs at least one replica");
+        this.map = map;
+        this.replicas = replicas;
+        this.baseSeed = baseSeed;
+        this.ticks = ticks;
+        this.threads = Math.max(1, Math.min(threads, replicas));
+    }
+
+    // Outcome of one replica.
+    public static final class Replica {
+        public final int index;
+        public final long seed;
+        public long trips;
+        public double meanTripSeconds = Double.NaN;       // NaN if no trip was completed
+        public final double[] meanTripSecondsByType = new double[VehicleType.values().length];
+        public double meanQueue;                          // Time-averaged vehicles queued per road, over all roads
+        public int vehiclesAtEnd;
+        public double seconds;                            // Wall-clock time of the run
+        public double cpuSeconds;                         // CPU time of the run
+        public long allocatedBytes = -1;                  // Heap allocated by the run, -1 if the JVM does not report it
+
+        Replica(int index, long seed) {
+            this.index = index;
+            this.seed = seed;
+        }
+    }
+
+    // Mean over the replicas with the half width of its 95% confidence interval (NaN for fewer than two replicas).
+    public static final class Interval {
+        public final int n;
+        public final double mean;
+        public final double halfWidth;
+
+        Interval(int n, double mean, double halfWidth) {
+            this.n = n;
+            this.mean = mean;
+            this.halfWidth = halfWidth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f +/- %.3f", mean, halfWidth);
+        }
+    }
+
+    public static final class Result {
+        public final List<Replica> replicas = new ArrayList<>();
+        public double seconds;             // Wall-clock time of the whole ensemble
+        public int threads;
+        public long topologyBytes;         // Shared CSR arrays, held once for all replicas
+        public long replicaBytes = -1;     // Live heap of one finished replica (engine, vehicles, its own nodes and roads)
+
+        // Per road, over the replicas: sum and sum of squares of the time-averaged queue length, and the longest queue seen
+        final double[] queueSum, queueSquares;
+        final int[] queueMax;
+
+        Result(int edgeCount) {
+            queueSum = new double[edgeCount];
+            queueSquares = new double[edgeCount];
+            queueMax = new int[edgeCount];
+        }
+
+        // Time-averaged queue length of one road.
+        public Interval queue(int edge) {
+            return interval(replicas.size(), queueSum[edge], queueSquares[edge]);
+        }
+
+        public int maxQueue(int edge) {
+            return queueMax[edge];
+        }
+
+        // Mean trip time in seconds (the replicas' means, so every replica weighs the same); replicas without trips are left out.
+        public Interval tripSeconds() {
+            List<Double> means = new ArrayList<>();
+            for (Replica r : replicas) if (!Double.isNaN(r.meanTripSeconds)) means.add(r.meanTripSeconds);
+            return interval(means);
+        }
+
+        public Interval tripSeconds(VehicleType type) {
+            List<Double> means = new ArrayList<>();
+            for (Replica r : replicas) {
+                double m = r.meanTripSecondsByType[type.ordinal()];
+                if (!Double.isNaN(m)) means.add(m);
+            }
+            return interval(means);
+        }
+
+        public Interval trips() {
+            List<Double> counts = new ArrayList<>();
+            for (Replica r : replicas) counts.add((double) r.trips);
+            return interval(counts);
+        }
+
+        // Road ids with the longest mean queues, longest first.
+        public int[] busiestEdges(int count) {
+            List<Integer> ids = new ArrayList<>();
+            for (int e = 0; e < queueSum.length; e++) if (queueSum[e] > 0) ids.add(e);
+            ids.sort((a, b) -> Double.compare(queueSum[b], queueSum[a]));
+            int[] top = new int[Math.min(count, ids.size())];
+            for (int i = 0; i < top.length; i++) top[i] = ids.get(i);
+            return top;
+        }
+
+        // CPU time of all replicas over the ensemble's wall-clock time: how many cores the ensemble kept busy.
+        public double speedup() {
+            double busy = 0;
+            for (Replica r : replicas) busy += r.cpuSeconds;
+            return busy / seconds;
+        }
+
+        // One line per road: from and to node IDs, mean queue, confidence half width, longest queue.
+        public void writeCsv(Path file, CsrGraph graph) throws IOException {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+                out.println("from,to,mean_queue,ci95,max_queue");
+                for (int e = 0; e < queueSum.length; e++) {
+                    Interval q = queue(e);
+                    out.printf("%d,%d,%.4f,%.4f,%d%n", graph.nodes[graph.sources[e]].id, graph.nodes[graph.targets[e]].id,
+                            q.mean, q.halfWidth, queueMax[e]);
+                }
+            }
+        }
+
+        private synchronized void add(Replica replica, double[] meanQueues, int[] maxQueues) {
+            replicas.add(replica);
+            for (int e = 0; e < queueSum.length; e++) {
+                queueSum[e] += meanQueues[e];
+                queueSquares[e] += meanQueues[e] * meanQueues[e];
+                if (maxQueues[e] > queueMax[e]) queueMax[e] = maxQueues[e];
+            }
+        }
+    }
+
+    public Result run() throws InterruptedException {
+        CsrGraph g = map.csr;
+        Result result = new Result(g.edgeCount);
+        result.threads = threads;
+        result.topologyBytes = g.topologyBytes();
+        AtomicReference<SimulationEngine> kept = new AtomicReference<>(); // The first replica, kept alive to measure its footprint
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ensemble");
+            t.setDaemon(true);
+            return t;
+        });
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> runs = new ArrayList<>(replicas);
+            for (int i = 0; i < replicas; i++) {
+                int index = i;
+                runs.add(pool.submit(() -> runReplica(index, result, kept)));
+            }
+            for (Future<?> f : runs) f.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replica failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        result.seconds = (System.nanoTime() - started) / 1e9;
+        result.replicas.sort((a, b) -> Integer.compare(a.index, b.index));
+
+        long withReplica = usedHeapAfterGc();
+        kept.set(null);
+        result.replicaBytes = Math.max(0, withReplica - usedHeapAfterGc());
+        return result;
+    }
+
+    private void runReplica(int index, Result result, AtomicReference<SimulationEngine> kept) {
+        long allocatedBefore = allocatedBytes();
+        long cpuBefore = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+        long started = System.nanoTime();
+        Replica replica = new Replica(index, baseSeed + index);
+        SimulationEngine engine = new SimulationEngine(map.replicate());
+        engine.setSeed(replica.seed);
+        engine.setTickThreads(0, SimulationEngine.DEFAULT_REGIONS); // Parallelism comes from the replicas
+        ReplicaStats stats = new ReplicaStats(engine.graph.csr);
+        engine.addListener(stats);
+        engine.initializeTraffic();
+        engine.step(ticks * SimulationEngine.TICK_SECONDS);
+        engine.removeListener(stats);
+
+        replica.trips = stats.trips;
+        replica.meanTripSeconds = stats.trips == 0 ? Double.NaN : stats.tripTicks * SimulationEngine.TICK_SECONDS / stats.trips;
+        for (int t = 0; t < replica.meanTripSecondsByType.length; t++) {
+            replica.meanTripSecondsByType[t] = stats.tripsByType[t] == 0 ? Double.NaN
+                    : stats.tripTicksByType[t] * SimulationEngine.TICK_SECONDS / stats.tripsByType[t];
+        }
+        double[] meanQueues = stats.meanQueues();
+        double total = 0;
+        for (double q : meanQueues) total += q;
+        replica.meanQueue = meanQueues.length == 0 ? 0 : total / meanQueues.length;
+        replica.vehiclesAtEnd = engine.vehicles.size();
+        replica.seconds = (System.nanoTime() - started) / 1e9;
+        replica.cpuSeconds = (ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - cpuBefore) / 1e9;
+        if (allocatedBefore >= 0) replica.allocatedBytes = allocatedBytes() - allocatedBefore;
+        result.add(replica, meanQueues, stats.maxQueue);
+        if (index == 0) kept.set(engine);
+    }
+
+    // Collects one replica's statistics on its own thread, from inside its ticks.
+    private static final class ReplicaStats implements SimulationListener {
+        private final CsrGraph graph;
+        final double[] queueSum;
+        final int[] maxQueue;
+        int samples = 0;
+        long trips = 0, tripTicks = 0;
+        final long[] tripsByType = new long[VehicleType.values().length];
+        final long[] tripTicksByType = new long[VehicleType.values().length];
+
+        ReplicaStats(CsrGraph graph) {
+            this.graph = graph;
+            this.queueSum = new double[graph.edgeCount];
+            this.maxQueue = new int[graph.edgeCount];
+        }
+
+        @Override
+        public void tickCompleted(SimulationEngine engine) {
+            if (engine.getTickCount() % SAMPLE_TICKS != 0) return;
+            samples++;
+            for (int e = 0; e < queueSum.length; e++) {
+                int q = graph.edges[e].vehicleQueue.size();
+                queueSum[e] += q;
+                if (q > maxQueue[e]) maxQueue[e] = q;
+            }
+        }
+
+        @Override
+        public void tripCompleted(SimulationEngine engine, Vehicle vehicle, long ticks) {
+            trips++;
+            tripTicks += ticks;
+            tripsByType[vehicle.type.ordinal()]++;
+            tripTicksByType[vehicle.type.ordinal()] += ticks;
+        }
+
+        double[] meanQueues() {
+            double[] mean = new double[queueSum.length];
+            if (samples > 0) for (int e = 0; e < mean.length; e++) mean[e] = queueSum[e] / samples;
+            return mean;
+        }
+    }
+
+    static Interval interval(List<Double> samples) {
+        double sum = 0, squares = 0;
+        for (double x : samples) {
+            sum += x;
+            squares += x * x;
+        }
+        return interval(samples.size(), sum, squares);
+    }
+
+    static Interval interval(int n, double sum, double squares) {
+        if (n == 0) return new Interval(0, Double.NaN, Double.NaN);
+        double mean = sum / n;
+        if (n < 2) return new Interval(n, mean, Double.NaN);
+        double variance = Math.max(0, (squares - n * mean * mean) / (n - 1));
+        return new Interval(n, mean, t95(n - 1) * Math.sqrt(variance / n));
+    }
+
+    // Student t quantile; beyond the table the value of the nearest tabulated degrees of freedom below is used (slightly wider).
+    private static double t95(int degrees) {
+        if (degrees <= T95.length) return T95[degrees - 1];
+        if (degrees < 40) return 2.042;
+        if (degrees < 60) return 2.021;
+        if (degrees < 120) return 2.000;
+        return 1.980;
+    }
+
+    // Heap allocated by the calling thread so far, or -1 if the JVM cannot tell.
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+package simulation;
+
+import java.util.Arrays;
+
+// Calendar queue for events at whole-tick times. The next 'ringSize' ticks each have a bucket in a ring, so scheduling and popping
+// are O(1); events further out wait in a binary heap (the overflow year) and move into the ring as time approaches them.
+// Events with the same time come out in the order they were scheduled, so a run is reproducible. Payloads are opaque longs.
+final class EventCalendar {
+    private final long[][] buckets;
+    private final int[] bucketSizes;
+    private final int mask;
+    private long now = 0;      // Time of the bucket being drained; events are never scheduled before it
+    private int drained = 0;   // Entries of the current bucket already returned
+    private int size = 0;
+
+    // Overflow heap ordered by (time, sequence)
+    private long[] heapTimes = new long[64];
+    private long[] heapSeqs = new long[64];
+    private long[] heapPayloads = new long[64];
+    private int heapSize = 0;
+    private long sequence = 0;
+
+    EventCalendar(int ringSizePowerOfTwo) {
+        int ringSize = Integer.highestOneBit(Math.max(2, ringSizePowerOfTwo));
+        buckets = new long[ringSize][];
+        bucketSizes = new int[ringSize];
+        mask = ringSize - 1;
+        for (int i = 0; i < ringSize; i++) buckets[i] = new long[4];
+    }
+
+    void schedule(long time, long payload) {
+        if (time < now) time = now;
+        size++;
+        if (time - now > mask) {
+            pushOverflow(time, payload);
+        } else {
+            addToBucket(time, payload);
+        }
+    }
+
+    private void addToBucket(long time, long payload) {
+        int b = (int) (time & mask);
+        if (bucketSizes[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], bucketSizes[b] * 2);
+        buckets[b][bucketSizes[b]++] = payload;
+    }
+
+    // Returns the next payload due at or before 'time', or -1 when there is none. Time must not go backwards between calls.
+    // Events scheduled for the current time while it is being drained are returned in the same pass.
+    long poll(long time) {
+        if (time < now) throw new IllegalArgumentException("Calendar time went backwards: " + time + " < " + now);
+        while (true) {
+            int b = (int) (now & mask);
+            if (drained < bucketSizes[b]) {
+                size--;
+                return buckets[b][drained++];
+            }
+            if (now == time) return -1;
+            // This tick is drained: move on, pulling in overflow events that now fit the ring. An empty calendar jumps straight there.
+            bucketSizes[b] = 0;
+            drained = 0;
+            now = (size == 0) ? time : now + 1;
+            while (heapSize > 0 && heapTimes[0] - now <= mask) {
+                long t = heapTimes[0];
+                addToBucket(Math.max(t, now), popOverflow());
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Drops all pending events (the current time is kept).
+    void clear() {
+        Arrays.fill(bucketSizes, 0);
+        drained = 0;
+        heapSize = 0;
+        size = 0;
+    }
+
+    private void pushOverflow(long time, long payload) {
+        if (heapSize == heapTimes.length) {
+            heapTimes = Arrays.copyOf(heapTimes, heapSize * 2);
+            heapSeqs = Arrays.copyOf(heapSeqs, heapSize * 2);
+            heapPayloads = Arrays.copyOf(heapPayloads, heapSize * 2);
+        }
+        long seq = sequence++;
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, seq, heapTimes[parent], heapSeqs[parent])) break;
+            heapTimes[i] = heapTimes[parent];
+            heapSeqs[i] = heapSeqs[parent];
+            heapPayloads[i] = heapPayloads[parent];
+            i = parent;
+        }
+        heapTimes[i] = time;
+        heapSeqs[i] = seq;
+        heapPayloads[i] = payload;
+    }
+
+    private long popOverflow() {
+        long top = heapPayloads[0];
+        heapSize--;
+        if (heapSize > 0) {
+            long time = heapTimes[heapSize], seq = heapSeqs[heapSize], payload = heapPayloads[heapSize];
+            int i = 0;
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && before(heapTimes[child + 1], heapSeqs[child + 1], heapTimes[child], heapSeqs[child])) child++;
+                if (!before(heapTimes[child], heapSeqs[child], time, seq)) break;
+                heapTimes[i] = heapTimes[child];
+                heapSeqs[i] = heapSeqs[child];
+                heapPayloads[i] = heapPayloads[child];
+                i = child;
+            }
+            heapTimes[i] = time;
+            heapSeqs[i] = seq;
+            heapPayloads[i] = payload;
+        }
+        return top;
+    }
+
+    private static boolean before(long timeA, long seqA, long timeB, long seqB) {
+        return timeA < timeB || (timeA == timeB && seqA < seqB);
+    }
+}
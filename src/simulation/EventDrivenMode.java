@@ -0,0 +1,223 @@
+package simulation;
+
+import java.util.Arrays;
+import models.*;
+
+// Discrete-event alternative to the time-stepped tick (-Dtraffic.events=true). Instead of advancing every vehicle's progress each tick,
+// the tick at which a vehicle reaches the end of its road is computed from its speed and the road length and put in an EventCalendar.
+// A vehicle that finds its way blocked waits on the road until something can change the answer: the vehicle ahead of it leaves,
+// or the light at the intersection switches. Light switches are events too: a light's load only changes when a vehicle enters or
+// leaves one of its roads, and between those moments its phase durations are fixed, so the next switch can be scheduled exactly.
+// Time is still counted in whole ticks, so speeds and light timings mean the same as in the tick loop, but the work per tick is
+// proportional to the events due in it. Positions are only interpolated for the store when a viewer asks for them.
+final class EventDrivenMode {
+    private static final long LIGHT_EVENT = 1L << 62;
+    private static final long VERSION_MASK = (1L << 30) - 1;
+
+    private final SimulationEngine engine;
+    private final VehicleStore vehicles;
+    private final CsrGraph graph;
+    private final ApproachLoads loads;
+    private final EventCalendar calendar = new EventCalendar(4096);
+    private final TickLane lane = new TickLane(-1);
+
+    // Per slot
+    private int[] versions = new int[0];        // Bumped on every reschedule; events carrying an older version are stale
+    private long[] departTicks = new long[0];   // Tick of the first move counted from departProgress
+    private double[] departProgress = new double[0];
+    private double[] speeds = new double[0];    // Fraction of the current road per tick
+    private int[] waitingOn = new int[0];       // Edge the vehicle is waiting at the end of, -1 if it is driving
+    private int[] waitNext = new int[0];        // Next slot in the same edge's wait list
+
+    private final int[] waitHead;               // Edge id -> first waiting slot, -1 if none
+    private final int[] lightVersions;          // Dense node index -> version of its pending switch event
+    private long processed = 0;
+
+    EventDrivenMode(SimulationEngine engine, VehicleStore vehicles, CsrGraph graph, ApproachLoads loads) {
+        this.engine = engine;
+        this.vehicles = vehicles;
+        this.graph = graph;
+        this.loads = loads;
+        waitHead = new int[graph.edgeCount];
+        Arrays.fill(waitHead, -1);
+        lightVersions = new int[graph.nodeCount];
+    }
+
+    // Takes over from the tick loop at 'now': every light is brought up to date and every vehicle is scheduled from its current progress.
+    void start(long now) {
+        for (Node n : graph.nodes) {
+            if (n.type != NodeType.INTERSECTION) continue;
+            n.trafficLight.advance(now, loads.northSouth(n.index), loads.eastWest(n.index));
+            scheduleLight(n.index, now);
+        }
+        for (int slot = 0; slot < vehicles.highWater(); slot++) {
+            if (vehicles.handles[slot] != null && vehicles.nextNodes[slot] >= 0) schedule(slot, now);
+        }
+    }
+
+    // Hands back to the tick loop at 'now': positions and lights are brought up to date.
+    void stop(long now) {
+        refreshPositions(now);
+        syncLights(now);
+    }
+
+    // Advances every light to 'now' under its current load, e.g. before all queues are emptied at once.
+    void syncLights(long now) {
+        for (Node n : graph.nodes) {
+            if (n.type == NodeType.INTERSECTION) n.trafficLight.advance(now, loads.northSouth(n.index), loads.eastWest(n.index));
+        }
+    }
+
+    // Forgets all pending events and waits (all vehicles are gone).
+    void clear() {
+        calendar.clear();
+        Arrays.fill(waitHead, -1);
+        Arrays.fill(waitingOn, -1);
+    }
+
+    // Processes every event due at tick 'now'.
+    void run(long now) {
+        lane.begin();
+        long event;
+        while ((event = calendar.poll(now)) != -1) {
+            processed++;
+            int id = (int) event;
+            int version = (int) ((event >>> 32) & VERSION_MASK);
+            if ((event & LIGHT_EVENT) != 0) {
+                if (version == lightVersions[id]) switchLight(id, now);
+            } else if (id < versions.length && version == versions[id] && vehicles.handles[id] != null) {
+                arrive(id, now);
+            }
+        }
+    }
+
+    // (Re)schedules a vehicle from its current progress, with the first move at tick 'from'. It reaches the end of its road during
+    // the first tick whose move would take its progress to 1, exactly when the tick loop's look-ahead would fire.
+    void schedule(int slot, long from) {
+        ensureCapacity(slot + 1);
+        if (vehicles.nextNodes[slot] < 0) return;
+        double speed = engine.speedPerTick(slot);
+        double p0 = vehicles.progress[slot];
+        long k = Math.max(0, (long) Math.ceil((1.0 - p0) / speed) - 1);
+        while (p0 + k * speed + speed < 1.0) k++;
+        while (k > 0 && p0 + (k - 1) * speed + speed >= 1.0) k--;
+        departTicks[slot] = from;
+        departProgress[slot] = p0;
+        speeds[slot] = speed;
+        waitingOn[slot] = -1;
+        calendar.schedule(from + k, vehiclePayload(slot));
+    }
+
+    private long vehiclePayload(int slot) {
+        int version = (int) ((versions[slot] + 1) & VERSION_MASK);
+        versions[slot] = version;
+        return ((long) version << 32) | slot;
+    }
+
+    // A vehicle reached the end of its road: it passes if the way is clear, otherwise it waits at the stop line.
+    private void arrive(int slot, long now) {
+        if (vehicles.nextNodes[slot] < 0) return;
+        if (!engine.mayEnterNode(slot)) {
+            vehicles.progress[slot] = Math.min(departProgress[slot] + (now - departTicks[slot]) * speeds[slot], 1.0 - 1e-9);
+            int edge = vehicles.edgeIds[slot];
+            if (edge < 0) return;
+            waitingOn[slot] = edge;
+            waitNext[slot] = waitHead[edge];
+            waitHead[edge] = slot;
+            return;
+        }
+        Vehicle v = vehicles.handles[slot];
+        engine.reachNode(slot, lane);
+        if (v.isActive()) schedule(slot, now + 1); // Next road starts with the next tick, as in the tick loop
+    }
+
+    // Called (under the store lock) when a vehicle was added or put somewhere else on its path.
+    void vehiclePlaced(int slot, long now) {
+        schedule(slot, now);
+    }
+
+    // Brings the light at the end of a road up to date before its load changes.
+    void beforeLoadChange(int edge, long now) {
+        Node n = graph.nodes[graph.targets[edge]];
+        if (n.type == NodeType.INTERSECTION) n.trafficLight.advance(now, loads.northSouth(n.index), loads.eastWest(n.index));
+    }
+
+    // Reschedules the next switch of the light at the end of a road after its load changed.
+    void afterLoadChange(int edge, long now) {
+        int node = graph.targets[edge];
+        if (graph.nodes[node].type == NodeType.INTERSECTION) scheduleLight(node, now);
+    }
+
+    // A vehicle left a road, so the one behind it may now be at the head of the queue.
+    void edgeLeft(int edge, long now) {
+        wake(edge, now);
+    }
+
+    // Schedules the next phase change of a light that is up to date at 'now'. Lights without load need no event:
+    // nobody waits there, and the first vehicle to arrive reschedules them.
+    private void scheduleLight(int node, long now) {
+        lightVersions[node] = (int) ((lightVersions[node] + 1) & VERSION_MASK);
+        if (loads.isQuiet(node)) return;
+        TrafficLight light = graph.nodes[node].trafficLight;
+        long at = now + light.updatesUntilSwitch(loads.northSouth(node), loads.eastWest(node));
+        calendar.schedule(at, LIGHT_EVENT | ((long) lightVersions[node] << 32) | node);
+    }
+
+    private void switchLight(int node, long now) {
+        graph.nodes[node].trafficLight.advance(now, loads.northSouth(node), loads.eastWest(node));
+        for (int k = graph.inOffsets[node]; k < graph.inOffsets[node + 1]; k++) wake(graph.inEdges[k], now);
+        scheduleLight(node, now);
+    }
+
+    // Lets every vehicle waiting at the end of a road try again at 'now'.
+    private void wake(int edge, long now) {
+        int slot = waitHead[edge];
+        waitHead[edge] = -1;
+        while (slot >= 0) {
+            int next = waitNext[slot];
+            waitingOn[slot] = -1;
+            if (vehicles.handles[slot] != null) {
+                departTicks[slot] = now;
+                departProgress[slot] = vehicles.progress[slot];
+                calendar.schedule(now, vehiclePayload(slot));
+            }
+            slot = next;
+        }
+    }
+
+    // Interpolates the progress of every driving vehicle at tick 'now' into the store and re-buckets it, for the GUI and queries.
+    void refreshPositions(long now) {
+        SpatialIndex index = engine.getSpatialIndex();
+        int slots = Math.min(vehicles.highWater(), versions.length);
+        for (int slot = 0; slot < slots; slot++) {
+            Vehicle v = vehicles.handles[slot];
+            if (v == null || vehicles.nextNodes[slot] < 0) continue;
+            if (waitingOn[slot] < 0) {
+                double p = departProgress[slot] + (now - departTicks[slot]) * speeds[slot];
+                vehicles.progress[slot] = Math.max(0, Math.min(p, 1.0 - 1e-9));
+            }
+            index.update(v);
+        }
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots <= versions.length) return;
+        int capacity = Math.max(slots, Math.max(16, versions.length * 2));
+        int old = versions.length;
+        versions = Arrays.copyOf(versions, capacity);
+        departTicks = Arrays.copyOf(departTicks, capacity);
+        departProgress = Arrays.copyOf(departProgress, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        waitingOn = Arrays.copyOf(waitingOn, capacity);
+        waitNext = Arrays.copyOf(waitNext, capacity);
+        Arrays.fill(waitingOn, old, capacity, -1);
+    }
+
+    long getEventsProcessed() {
+        return processed;
+    }
+
+    int getPendingEvents() {
+        return calendar.size();
+    }
+}
@@ -0,0 +1,107 @@
+package simulation;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only record of the inputs that reach the engine from outside the simulation: spawn requests, batches, bus dispatches,
+// resets and user (role) changes, each stamped with the tick boundary at which the engine applied it. Everything else the engine
+// decides itself from its seeded Random and the simulation clock, so the seed plus this log reproduce a run exactly.
+// One tab-separated line per entry ("<tick>\t<kind>\t<args...>"), after a "seed\t<seed>" header; each line is flushed when written.
+public class InputLog implements Closeable {
+    private final BufferedWriter out;
+
+    private InputLog(BufferedWriter out) {
+        this.out = out;
+    }
+
+    // Starts a new log at 'file' (replacing an existing one) for a run with the given seed.
+    public static InputLog create(Path file, long seed) throws IOException {
+        InputLog log = new InputLog(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        log.writeLine("seed\t" + seed);
+        return log;
+    }
+
+    public synchronized void append(long tick, String kind, Object... args) {
+        StringBuilder line = new StringBuilder().append(tick).append('\t').append(kind);
+        for (Object arg : args) line.append('\t').append(String.valueOf(arg).replaceAll("[\t\r\n]", " "));
+        writeLine(line.toString());
+    }
+
+    private void writeLine(String line) {
+        try {
+            out.write(line);
+            out.newLine();
+            out.flush(); // A run that dies still leaves a replayable prefix
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the input log", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // Reads a log written by create()/append() for replay.
+    public static Replay read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).startsWith("seed\t")) throw new IOException(file + " is not an input log (no seed header)");
+        long seed = Long.parseLong(lines.get(0).substring(5).trim());
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 1; i < lines.size(); i++) {
+            if (lines.get(i).isEmpty()) continue;
+            String[] fields = lines.get(i).split("\t", -1);
+            if (fields.length < 2) throw new IOException(file + ":" + (i + 1) + ": malformed entry");
+            entries.add(new Entry(Long.parseLong(fields[0]), fields[1], Arrays.copyOfRange(fields, 2, fields.length)));
+        }
+        return new Replay(seed, entries);
+    }
+
+    public static final class Entry {
+        public final long tick;     // Tick count when the input was applied, i.e. it happened just before tick number 'tick' ran
+        public final String kind;
+        public final String[] args;
+
+        Entry(long tick, String kind, String[] args) {
+            this.tick = tick;
+            this.kind = kind;
+            this.args = args;
+        }
+    }
+
+    // A log being played back: entries are handed out in order as the engine's clock reaches them.
+    public static final class Replay {
+        public final long seed;
+        private final List<Entry> entries;
+        private int next = 0;
+
+        Replay(long seed, List<Entry> entries) {
+            this.seed = seed;
+            this.entries = entries;
+        }
+
+        // The next entry due at or before 'tick', or null.
+        Entry poll(long tick) {
+            if (next < entries.size() && entries.get(next).tick <= tick) return entries.get(next++);
+            return null;
+        }
+
+        public boolean isFinished() {
+            return next >= entries.size();
+        }
+
+        public int size() {
+            return entries.size();
+        }
+    }
+}
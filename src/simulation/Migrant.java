@@ -0,0 +1,60 @@
+package simulation;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import models.VehicleType;
+
+// A vehicle on its way from one shard to another: everything the receiving engine needs to put it on the road it just turned into.
+// Nodes are dense CsrGraph indices, which are the same in every shard because all of them load the same map.
+final class Migrant {
+    final String id;
+    final VehicleType type;
+    final int destination;
+    final int[] path;
+    final int pathIndex;      // The vehicle is on the road path[pathIndex] -> path[pathIndex + 1]
+    final boolean returning;
+    final double progress;
+    final long departTick;
+
+    Migrant(String id, VehicleType type, int destination, int[] path, int pathIndex, boolean returning, double progress, long departTick) {
+        this.id = id;
+        this.type = type;
+        this.destination = destination;
+        this.path = path;
+        this.pathIndex = pathIndex;
+        this.returning = returning;
+        this.progress = progress;
+        this.departTick = departTick;
+    }
+
+    // Dense index of the node at the end of the road it is on; its district is the shard that owns the road.
+    int roadTarget() {
+        return path[pathIndex + 1];
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeByte(type.ordinal());
+        out.writeInt(destination);
+        out.writeInt(path.length);
+        for (int node : path) out.writeInt(node);
+        out.writeInt(pathIndex);
+        out.writeBoolean(returning);
+        out.writeDouble(progress);
+        out.writeLong(departTick);
+    }
+
+    static Migrant read(DataInput in) throws IOException {
+        String id = in.readUTF();
+        VehicleType type = VehicleType.values()[in.readByte()];
+        int destination = in.readInt();
+        int[] path = new int[in.readInt()];
+        for (int i = 0; i < path.length; i++) path[i] = in.readInt();
+        int pathIndex = in.readInt();
+        boolean returning = in.readBoolean();
+        double progress = in.readDouble();
+        long departTick = in.readLong();
+        return new Migrant(id, type, destination, path, pathIndex, returning, progress, departTick);
+    }
+}
@@ -0,0 +1,72 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.CsrGraph;
+import models.NodeType;
+
+// Splits the city into compact regions by recursive coordinate bisection: the node set is cut at the median of its longer side
+// until there are 'regions' parts. A road belongs to the region of its target node, which is where its queue is served and whose
+// traffic light controls it, so every queue and light is owned by exactly one region.
+public class RegionPartition {
+    private final int regionCount;
+    private final int[] regionOf;         // Dense node index -> region
+    private final int[][] intersections;  // Region -> dense indices of its INTERSECTION nodes, ascending
+
+    public RegionPartition(CsrGraph graph, int regions) {
+        int n = graph.nodeCount;
+        regionCount = Math.max(1, Math.min(regions, Math.max(1, n)));
+        regionOf = new int[n];
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        split(graph, order, 0, n, 0, regionCount);
+
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int r = 0; r < regionCount; r++) lists.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            if (graph.nodes[i].type == NodeType.INTERSECTION) lists.get(regionOf[i]).add(i);
+        }
+        intersections = new int[regionCount][];
+        for (int r = 0; r < regionCount; r++) {
+            intersections[r] = lists.get(r).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // Assigns regions first .. first + count - 1 to order[from .. to - 1]. Sizes are split in proportion to the region counts.
+    private void split(CsrGraph g, Integer[] order, int from, int to, int first, int count) {
+        if (count == 1 || to - from <= 1) {
+            for (int k = from; k < to; k++) regionOf[order[k]] = first;
+            return;
+        }
+        int loX = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, loY = Integer.MAX_VALUE, hiY = Integer.MIN_VALUE;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            loX = Math.min(loX, g.xs[i]); hiX = Math.max(hiX, g.xs[i]);
+            loY = Math.min(loY, g.ys[i]); hiY = Math.max(hiY, g.ys[i]);
+        }
+        boolean byX = hiX - loX >= hiY - loY;
+        // Ties are broken by node index so the partition does not depend on the sort's stability
+        Arrays.sort(order, from, to, (a, b) -> {
+            int c = byX ? Integer.compare(g.xs[a], g.xs[b]) : Integer.compare(g.ys[a], g.ys[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        int leftCount = count / 2;
+        int mid = from + (int) ((long) (to - from) * leftCount / count);
+        split(g, order, from, mid, first, leftCount);
+        split(g, order, mid, to, first + leftCount, count - leftCount);
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    public int regionOf(int node) {
+        return regionOf[node];
+    }
+
+    public int[] intersections(int region) {
+        return intersections[region];
+    }
+}
@@ -0,0 +1,233 @@
+package simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// One district of a sharded run. Every shard is a separate process with its own SimulationEngine on the same map. The map is split
+// into districts by RegionPartition (recursive coordinate bisection) and each engine only simulates the roads of its own district.
+// Shards form a full mesh of TCP connections on the loopback interface: shard i listens on basePort + i and dials every lower shard.
+// A lockstep step sends every peer the vehicles that turned onto its roads (one message per peer, possibly empty) and then waits for
+// one message from every peer. Since a peer only sends after finishing its previous tick, the receive doubles as the tick barrier.
+// Arrivals are admitted in shard order and the tick runs. Tick time, barrier wait and migrations are counted for report().
+public class ShardNode implements Closeable {
+    private final SimulationEngine engine;
+    private final RegionPartition districts;
+    private final int shard;
+    private final int shardCount;
+    private final int basePort;
+    private final Peer[] peers;        // Shard -> connection, null for this shard
+    private ServerSocket server;
+    private long round = 0;            // Exchanges done so far; both ends of a connection must agree on it
+
+    // Statistics
+    private long ticks = 0;
+    private long tickNanos = 0;
+    private long maxTickNanos = 0;
+    private long barrierNanos = 0;
+    private long received = 0;
+    private final long[] sentTo;
+
+    public ShardNode(SimulationEngine engine, int shard, int shardCount, int basePort) {
+        if (shard < 0 || shard >= shardCount) throw new IllegalArgumentException("Shard " + shard + " is not in 0.." + (shardCount - 1));
+        this.engine = engine;
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.basePort = basePort;
+        this.districts = new RegionPartition(engine.graph.csr, shardCount);
+        if (districts.regionCount() != shardCount) {
+            throw new IllegalArgumentException("The map only has " + districts.regionCount() + " nodes, too few for " + shardCount + " shards");
+        }
+        this.peers = new Peer[shardCount];
+        this.sentTo = new long[shardCount];
+        engine.setDistrict(districts, shard);
+    }
+
+    // Opens the mesh. Peers that are not up yet are retried until the timeout.
+    public void connect(long timeoutMillis) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(loopback, basePort + shard), shardCount);
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (int other = 0; other < shard; other++) {
+            Socket socket = new Socket();
+            while (true) {
+                try {
+                    socket.connect(new InetSocketAddress(loopback, basePort + other), 1000);
+                    break;
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline) throw new IOException("Shard " + other + " did not come up", e);
+                    socket.close();
+                    socket = new Socket();
+                    sleepQuietly(50);
+                }
+            }
+            Peer p = new Peer(other, socket);
+            p.out.writeInt(shard); // Tell the peer who is calling
+            p.out.flush();
+            peers[other] = p;
+        }
+        server.setSoTimeout((int) Math.max(1000, deadline - System.currentTimeMillis()));
+        for (int pending = shardCount - 1 - shard; pending > 0; pending--) {
+            Socket socket = server.accept();
+            int other = new DataInputStream(socket.getInputStream()).readInt();
+            if (other <= shard || other >= shardCount || peers[other] != null) throw new IOException("Unexpected connection from shard " + other);
+            peers[other] = new Peer(other, socket);
+        }
+        for (Peer p : peers) if (p != null) p.startReader();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One lockstep tick: exchange migrants with every peer, then tick the local engine.
+    public void step() throws IOException {
+        exchange();
+        long started = System.nanoTime();
+        engine.tick();
+        long elapsed = System.nanoTime() - started;
+        ticks++;
+        tickNanos += elapsed;
+        maxTickNanos = Math.max(maxTickNanos, elapsed);
+    }
+
+    // Final exchange after the last tick, so vehicles that turned onto another district's road during it are not lost.
+    public void finish() throws IOException {
+        exchange();
+    }
+
+    private void exchange() throws IOException {
+        List<List<Migrant>> outgoing = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) outgoing.add(new ArrayList<>());
+        for (Migrant m : engine.takeEmigrants()) outgoing.get(districts.regionOf(m.roadTarget())).add(m);
+
+        for (Peer p : peers) {
+            if (p == null) continue;
+            List<Migrant> batch = outgoing.get(p.shard);
+            p.out.writeLong(round);
+            p.out.writeInt(batch.size());
+            for (Migrant m : batch) m.write(p.out);
+            p.out.flush();
+            sentTo[p.shard] += batch.size();
+        }
+
+        long waitStarted = System.nanoTime();
+        List<Migrant> arrivals = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            if (i == shard) {
+                arrivals.addAll(outgoing.get(i)); // Cannot normally happen: only foreign roads produce emigrants
+                continue;
+            }
+            List<Migrant> batch = peers[i].receive(round);
+            received += batch.size();
+            arrivals.addAll(batch);
+        }
+        barrierNanos += System.nanoTime() - waitStarted;
+        round++;
+        engine.admit(arrivals);
+    }
+
+    public String report() {
+        long sent = Arrays.stream(sentTo).sum();
+        double perTick = ticks == 0 ? 0 : 1.0 / ticks;
+        return String.format("shard %d/%d: %d nodes, %d ticks, %.3f ms/tick (max %.3f), barrier wait %.3f ms/tick, %d vehicles, "
+                        + "%d migrated out (%.2f/tick), %d in, out by shard %s",
+                shard, shardCount, nodesInDistrict(), ticks, tickNanos * perTick / 1e6, maxTickNanos / 1e6, barrierNanos * perTick / 1e6,
+                engine.vehicles.size(), sent, sent * perTick, received, Arrays.toString(sentTo));
+    }
+
+    private int nodesInDistrict() {
+        int count = 0;
+        for (int n = 0; n < engine.graph.csr.nodeCount; n++) if (districts.regionOf(n) == shard) count++;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Peer p : peers) if (p != null) p.socket.close();
+        if (server != null) server.close();
+    }
+
+    // Connection to another shard. A reader thread drains its messages into a queue, so a large batch in one direction can never
+    // block both ends on full socket buffers.
+    private static final class Peer {
+        final int shard;
+        final Socket socket;
+        final DataOutputStream out;
+        private final DataInputStream in;
+        private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>(); // Message or the IOException that ended the reader
+
+        Peer(int shard, Socket socket) throws IOException {
+            this.shard = shard;
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(0);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        }
+
+        void startReader() {
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        long round = in.readLong();
+                        int count = in.readInt();
+                        List<Migrant> batch = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) batch.add(Migrant.read(in));
+                        inbox.add(new Message(round, batch));
+                    }
+                } catch (EOFException e) {
+                    inbox.add(new IOException("Shard " + shard + " closed the connection"));
+                } catch (IOException e) {
+                    inbox.add(e);
+                }
+            }, "shard-peer-" + shard);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        List<Migrant> receive(long round) throws IOException {
+            Object next;
+            try {
+                next = inbox.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for shard " + shard);
+            }
+            if (next instanceof IOException) throw (IOException) next;
+            Message m = (Message) next;
+            if (m.round != round) throw new IOException("Shard " + shard + " is out of step: round " + m.round + ", expected " + round);
+            return m.batch;
+        }
+    }
+
+    private static final class Message {
+        final long round;
+        final List<Migrant> batch;
+
+        Message(long round, List<Migrant> batch) {
+            this.round = round;
+            this.batch = batch;
+        }
+    }
+}
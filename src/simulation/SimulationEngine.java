@@ -1,396 +1,1411 @@
 package simulation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
-import gui.SimulationPanel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import models.*;
+import routing.ContractionHierarchyRouter;
+import routing.DijkstraRouter;
+import routing.RouteCache;
+import routing.RoutingStrategies;
+import routing.RoutingStrategy;
+import routing.StationTrees;
 
-// Manages the core simulation logic, including vehicle movement, path finding (Dijkstra), traffic light updates, and thread management.
-public class SimulationEngine extends Thread {
+// Manages the core simulation logic, including vehicle movement, path finding (pluggable RoutingStrategy) and traffic light updates.
+// Time advances in fixed ticks of TICK_SECONDS, either explicitly through step()/tick() (headless runs, tests) or by the run loop
+// started with start(). The engine has no GUI dependency; views attach as SimulationListeners.
+// Runs are reproducible: every random choice comes from one seeded Random, background traffic and bus waves follow the tick clock,
+// and inputs from outside (spawns, resets, user changes) are applied between ticks under the store lock, where an InputLog can
+// record them with their tick for an exact replay.
+public class SimulationEngine {
     CityGraph graph;
-    public List<Vehicle> vehicles = new CopyOnWriteArrayList<>(); // Thread-safe list to prevent concurrency issues during iteration
-    SimulationPanel panel;
+    public final VehicleStore vehicles;          // Vehicle registry and per-vehicle tick state (parallel arrays); also the engine lock
+    private final List<SimulationListener> listeners = new CopyOnWriteArrayList<>();
 
     String currentUserRole = "";
     String currentUserId = "";
     int carIdCounter = 1;
-    int trafficLoopCount = 0;
-    private Thread busScheduleThread;
+    private long seed;                           // Seed of 'random'; together with the input log it reproduces a run
+    private Random random;                       // Source of every random choice the engine makes (trips, initial scatter)
+    private boolean deterministic;               // Congestion-epoch rebuilds run inline, so routes do not depend on thread timing
+    private double[] epochWeights;               // Reproducible runs: edge weights at the start of the current congestion epoch
+    private InputLog inputLog;                   // Records external inputs; null unless recording
+    private InputLog.Replay replay;              // Log being played back; live inputs are ignored meanwhile
+    private DemandModel demand;                  // Background traffic (OD flows on the simulation clock); null for none
+    private boolean generating;                  // Whether the demand runs; set by initializeTraffic()
+    private final List<TripRequest> departures = new ArrayList<>(); // Trips of the current tick boundary, reused every tick
+    private final TimerWheel<BusWave> busWaves = new TimerWheel<>(TIMER_WHEEL_BUCKETS, 0); // Bus waves still to be dispatched
+    private final Consumer<BusWave> dispatchWave = w -> createBusWave(w.wave, w.routes);
+    private boolean[] foreignEdges;              // Sharded mode: roads simulated by another shard; null when this engine runs the whole map
+    private final List<Integer> emigrants = new ArrayList<>(); // Slots of vehicles that turned onto a foreign road (guarded by itself)
+    private volatile RoutingStrategy router;
+    private final DijkstraRouter batchRouter; // One-to-many searches for spawnBatch
+    private volatile ExecutorService batchPool;
+    private volatile DynamicRerouter rerouter; // Null unless dynamic rerouting is enabled
+    private final StationTrees stationTrees;     // Precomputed return routes to the emergency service nodes
+    private final SpatialIndex spatialIndex;     // Nodes and vehicles bucketed by position, for "what is near this point" queries
+    private final ApproachLoads approachLoads;   // Queued vehicles per intersection and approach axis, kept up to date by enter/leaveEdge
+    private final int[] intersections;           // Dense indices of all INTERSECTION nodes
+    private volatile long tickCount = 0;
+    private double pendingTime = 0;              // Simulated seconds passed to step() but not yet consumed by a whole tick
+    private Thread loop;                         // Run loop thread, null while stopped
+    private volatile boolean running = false;
+    private final Object pacer = new Object();  // The run loop waits on it between frames; stop() wakes it instead of interrupting
+    private volatile double targetTicksPerSecond = 1.0 / TICK_SECONDS; // 0 = as fast as possible
+    private volatile long tickOverruns = 0;      // Frames whose budget ran out before the ticks the speed owed them
+    private volatile long frames = 0;
+    private final TickLane sequentialLane = new TickLane(-1);
+    private RegionPartition regions;             // Region-partitioned tick; null for the classic single-threaded tick
+    private TickLane[] regionLanes;
+    private ForkJoinPool tickPool;
+    private EventDrivenMode events;              // Discrete-event mode; null for the time-stepped tick
+
+    public static final double TICK_SECONDS = 0.05; // Simulated time per tick; vehicle speeds and light timings are tuned to it
+    static final int CONGESTION_EPOCH_TICKS = 20; // Congestion epoch length: 20 ticks = 1 second of simulated time
+    static final int SPATIAL_CELL_SIZE = 100;     // Pixels per spatial index cell (about one block of the built-in city)
+    static final int DEFAULT_REGIONS = 64;        // Region count of the parallel tick; fixed so results do not depend on the thread count
+    static final int BUS_WAVE_INTERVAL_TICKS = 500; // 25 simulated seconds between bus waves
+    static final int TIMER_WHEEL_BUCKETS = 1024;    // One revolution of the timer wheel = 51.2 simulated seconds
+    static final double FRAME_RATE = 60;            // Frames per second the run loop hands to its viewers, whatever the speed
+
+    private static final class BusWave {
+        final int wave;
+        final List<CompiledRoute> routes;
+
+        BusWave(int wave, List<CompiledRoute> routes) {
+            this.wave = wave;
+            this.routes = routes;
+        }
+    }
 
     public SimulationEngine(CityGraph graph) {
         this.graph = graph;
+        this.vehicles = new VehicleStore(graph.csr, 1024);
+        this.router = RouteCache.wrapFromSystemProperties(RoutingStrategies.fromSystemProperty(graph.csr), graph.csr);
+        this.batchRouter = new DijkstraRouter(graph.csr);
+        this.stationTrees = new StationTrees(graph.csr, emergencyStations());
+        this.spatialIndex = new SpatialIndex(graph.csr, SPATIAL_CELL_SIZE);
+        this.approachLoads = new ApproachLoads(graph.csr);
+        this.intersections = graph.nodesOfType(NodeType.INTERSECTION).stream().mapToInt(n -> n.index).toArray();
+        setBatchWorkers(Integer.getInteger("traffic.batchWorkers", 0));
+        setDynamicRerouting(Boolean.getBoolean("traffic.reroute"));
+        setTickThreads(Integer.getInteger("traffic.tickThreads", 0), Integer.getInteger("traffic.regions", DEFAULT_REGIONS));
+        setEventDriven(Boolean.getBoolean("traffic.events"));
+        reseed(Long.getLong("traffic.seed", System.nanoTime()));
+        deterministic = System.getProperty("traffic.seed") != null;
+        try {
+            String replayFrom = System.getProperty("traffic.replay");
+            String recordTo = System.getProperty("traffic.record");
+            if (replayFrom != null) replay(InputLog.read(Paths.get(replayFrom)));
+            else if (recordTo != null) recordInputs(Paths.get(recordTo));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the input log", e);
+        }
+        try {
+            demand = DemandModel.fromSystemProperties(graph);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the demand file", e);
+        }
+    }
+
+    private int[] emergencyStations() {
+        List<Integer> stations = new ArrayList<>();
+        for (Node n : graph.csr.nodes) {
+            if (n.type == NodeType.POLICE || n.type == NodeType.HOSPITAL || n.type == NodeType.FIRE_STATION) stations.add(n.index);
+        }
+        int[] result = new int[stations.size()];
+        for (int i = 0; i < result.length; i++) result[i] = stations.get(i);
+        return result;
+    }
+
+    // Enables or disables repairing the routes of vehicles already on the road as congestion changes (-Dtraffic.reroute=true).
+    public void setDynamicRerouting(boolean enabled) {
+        rerouter = enabled ? DynamicRerouter.fromSystemProperties(graph.csr) : null;
+    }
+
+    public DynamicRerouter getDynamicRerouter() {
+        return rerouter;
+    }
+
+    // Copy of every vehicle's position and route as of the last tick boundary, for views on other threads.
+    public VehicleSnapshot snapshotVehicles() {
+        synchronized (vehicles) {
+            return vehicles.snapshot();
+        }
+    }
+
+    public VehicleStore getVehicleStore() {
+        return vehicles;
+    }
+
+    public ApproachLoads getApproachLoads() {
+        return approachLoads;
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SimulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Starts recording every external input to 'file', beginning with the current seed. Should be called before any traffic exists.
+    public void recordInputs(Path file) throws IOException {
+        synchronized (vehicles) {
+            inputLog = InputLog.create(file, seed);
+            deterministic = true;
+        }
+    }
+
+    // Plays back a recorded run on a fresh engine (same map and settings): the engine takes the log's seed, and each entry is
+    // applied just before the tick it was recorded at. Live inputs are ignored from now on so they cannot change the outcome.
+    public void replay(InputLog.Replay log) {
+        synchronized (vehicles) {
+            replay = log;
+            reseed(log.seed);
+            deterministic = true;
+        }
+    }
+
+    public boolean isReplaying() {
+        return replay != null;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Restarts the engine's random source from a seed (e.g. one replica of an ensemble) and makes the run reproducible.
+    public void setSeed(long seed) {
+        synchronized (vehicles) {
+            if (!acceptInput("seed", seed)) return;
+            reseed(seed);
+            deterministic = true;
+        }
+    }
+
+    private void reseed(long seed) {
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    // Admits an input from outside the simulation. Caller holds the store lock, so the input lands between two ticks and is logged
+    // with the number of the next one. Returns false while a replay is running.
+    private boolean acceptInput(String kind, Object... args) {
+        if (replay != null) return false;
+        if (inputLog != null) inputLog.append(tickCount, kind, args);
+        return true;
+    }
+
+    // Applies the replayed inputs that were recorded before the tick about to run. Caller holds the store lock.
+    private void applyReplayedInputs() {
+        InputLog.Entry e;
+        while ((e = replay.poll(tickCount)) != null) {
+            switch (e.kind) {
+                case "init": startTraffic(); break;
+                case "spawn": spawn(nodeById(e.args[0]), nodeById(e.args[1]), VehicleType.valueOf(e.args[2])); break;
+                case "batch": spawnTrips(decodeTrips(e.args)); break;
+                case "buses": dispatchBuses(); break;
+                case "reset": clearTraffic(); break;
+                case "user": applyUser(e.args[0], e.args[1]); break;
+                case "seed": reseed(Long.parseLong(e.args[0])); break;
+                case "demand": demand = e.args.length == 0 ? null : DemandModel.parse(String.join("\n", e.args), graph, "input log"); break;
+                default: throw new IllegalStateException("Unknown input log entry '" + e.kind + "' at tick " + e.tick);
+            }
+        }
+    }
+
+    private Node nodeById(String id) {
+        Node n = graph.nodes.get(Integer.parseInt(id));
+        if (n == null) throw new IllegalStateException("Input log refers to node " + id + ", which is not on this map");
+        return n;
+    }
+
+    // Batch trips are logged as "start:end:TYPE" fields.
+    private static Object[] encodeTrips(List<TripRequest> trips) {
+        Object[] fields = new Object[trips.size()];
+        for (int i = 0; i < fields.length; i++) {
+            TripRequest t = trips.get(i);
+            fields[i] = t.start.id + ":" + t.end.id + ":" + t.type;
+        }
+        return fields;
+    }
+
+    private List<TripRequest> decodeTrips(String[] fields) {
+        List<TripRequest> trips = new ArrayList<>(fields.length);
+        for (String field : fields) {
+            String[] parts = field.split(":");
+            trips.add(new TripRequest(nodeById(parts[0]), nodeById(parts[1]), VehicleType.valueOf(parts[2])));
+        }
+        return trips;
+    }
+
+    // Replaces the background traffic demand (null = none). If initializeTraffic() has run, the new flows start with the next tick.
+    public void setDemand(DemandModel model) {
+        synchronized (vehicles) {
+            Object[] lines = (model == null) ? new Object[0] : model.getSpec().split("\r?\n"); // Logged one line per field
+            if (acceptInput("demand", lines)) demand = model;
+        }
     }
 
-    public void setPanelToRefresh(SimulationPanel panel) {
-        this.panel = panel;
+    public DemandModel getDemand() {
+        return demand;
     }
 
     public void setCurrentUser(String role, String id) {
+        synchronized (vehicles) {
+            if (!acceptInput("user", role, id)) return;
+        }
+        applyUser(role, id);
+    }
+
+    private void applyUser(String role, String id) {
         this.currentUserRole = role;
         this.currentUserId = id;
-        panel.enableControls(role);
+        for (SimulationListener l : listeners) l.userChanged(role, id);
     }
 
-    // Clears all active vehicles, resets counters, and stops bus schedules. Called when the user logs out or resets the view.
+    // Clears all active vehicles, resets counters, and cancels pending bus waves. Called when the user logs out or resets the view.
     public void resetTraffic() {
-        if (busScheduleThread != null && busScheduleThread.isAlive()) {
-            busScheduleThread.interrupt();
+        synchronized (vehicles) {
+            if (acceptInput("reset")) clearTraffic();
         }
+    }
 
-        vehicles.clear();
-        carIdCounter = 1;
-
-        // Clear all waiting queues on edges
-        if (graph != null && graph.adjList != null) {
-            for (List<Edge> edges : graph.adjList.values()) {
-                for (Edge e : edges) {
-                    if (e.vehicleQueue != null) {
-                        e.vehicleQueue.clear();
-                    }
+    private void clearTraffic() {
+        synchronized (vehicles) {
+            busWaves.clear();
+            if (events != null) {
+                events.syncLights(tickCount); // Lights account for the load they had up to now before it drops to zero
+                events.clear();
+            }
+            vehicles.clear();
+            // Clear all waiting queues on edges, together with their counters
+            for (Edge e : graph.csr.edges) {
+                if (e.vehicleQueue != null) {
+                    e.vehicleQueue.clear();
                 }
             }
+            approachLoads.clear();
+            spatialIndex.clearVehicles();
+            carIdCounter = 1;
+            advanceCongestionEpoch(); // Queues have been emptied, so cached routes need re-pricing
+            if (rerouter != null) rerouter.reset();
         }
     }
 
-    // Implements Dijkstra's algorithm to find the shortest path based on current edge weights (distance + congestion).
+    // Finds the cheapest path based on current edge weights (distance + congestion). The search itself is delegated to the
+    // configured RoutingStrategy, which works on dense CSR indices; this converts to and from Node objects.
     public List<Node> findPath(Node start, Node end) {
-        Map<Integer, Double> distances = new HashMap<>();
-        Map<Integer, Node> previous = new HashMap<>();
-        Set<Integer> visited = new HashSet<>();
+        CsrGraph g = graph.csr;
+        int source = g.indexOf(start.id);
+        int target = g.indexOf(end.id);
+        if (source < 0 || target < 0) return null;
+
+        int[] route = router.route(source, target);
+        if (route == null) return null; // No path found
+        return toNodes(route);
+    }
+
+    // Same search, returning the interned compiled route the engine's vehicles drive on.
+    private CompiledRoute findRoute(Node start, Node end) {
+        CsrGraph g = graph.csr;
+        int source = g.indexOf(start.id);
+        int target = g.indexOf(end.id);
+        if (source < 0 || target < 0) return null;
+        int[] route = router.route(source, target);
+        return route == null ? null : vehicles.routes().intern(route);
+    }
+
+    private List<Node> toNodes(int[] route) {
+        List<Node> path = new ArrayList<>(route.length);
+        for (int index : route) path.add(graph.csr.nodes[index]);
+        return path;
+    }
+
+    public RoutingStrategy getRoutingStrategy() {
+        return router;
+    }
+
+    public void setRoutingStrategy(RoutingStrategy router) {
+        this.router = router;
+    }
+
+    // Returns the route cache in front of the routing strategy (hit/miss/eviction counters), or null if caching is disabled.
+    public RouteCache getRouteCache() {
+        return (router instanceof RouteCache) ? (RouteCache) router : null;
+    }
+
+    // Marks a new congestion epoch. Cached routes must be re-priced against current edge weights before they are reused,
+    // a contraction hierarchy router re-customizes its shortcut weights and the station return trees are rebuilt (both in the background).
+    // A reproducible run must not depend on thread timing: it customizes right here, and hands the station trees a snapshot of this
+    // tick boundary's weights to build from.
+    public void advanceCongestionEpoch() {
+        RouteCache cache = getRouteCache();
+        if (cache != null) cache.advanceEpoch();
+        RoutingStrategy base = (cache != null) ? cache.getDelegate() : router;
+        if (deterministic) {
+            useEpochWeights(weightSnapshot());
+            return;
+        }
+        if (base instanceof ContractionHierarchyRouter) ((ContractionHierarchyRouter) base).requestCustomization();
+        stationTrees.requestRefresh();
+    }
 
-        PriorityQueue<PQNode> queue = new PriorityQueue<>();
+    // Prices the epoch's routing structures from one weight snapshot: the hierarchy's shortcuts and the station trees.
+    private void useEpochWeights(double[] weights) {
+        epochWeights = weights;
+        RouteCache cache = getRouteCache();
+        RoutingStrategy base = (cache != null) ? cache.getDelegate() : router;
+        if (base instanceof ContractionHierarchyRouter) ((ContractionHierarchyRouter) base).customize(weights);
+        stationTrees.useSnapshot(weights);
+    }
+
+    private double[] weightSnapshot() {
+        CsrGraph g = graph.csr;
+        double[] weights = new double[g.edgeCount];
+        for (int e = 0; e < weights.length; e++) weights[e] = g.currentWeight(e);
+        return weights;
+    }
+
+    // Calculates a path and spawns a new vehicle into the simulation. The route search runs under the store lock, so the vehicle
+    // is routed and placed against the state of one tick boundary.
+    public boolean spawnVehicle(Node start, Node end, VehicleType type) {
+        synchronized (vehicles) {
+            return acceptInput("spawn", start.id, end.id, type) && spawn(start, end, type);
+        }
+    }
+
+    private boolean spawn(Node start, Node end, VehicleType type) {
+        CompiledRoute route = findRoute(start, end);
+        if (route != null) {
+            createVehicle(end, type, route);
+            return true;
+        }
+        return false;
+    }
 
-        for (int id : graph.nodes.keySet()) {
-            distances.put(id, Double.MAX_VALUE);
+    private Vehicle createVehicle(Node end, VehicleType type, CompiledRoute route) {
+        synchronized (vehicles) {
+            String id = type.toString().substring(0, 3) + (carIdCounter++);
+            return addVehicle(id, type, end, route);
         }
-        distances.put(start.id, 0.0);
-        queue.add(new PQNode(start, 0.0));
+    }
 
-        while (!queue.isEmpty()) {
-            PQNode currentPQ = queue.poll();
-            Node current = currentPQ.node;
+    // Allocates a store slot for a new vehicle and puts it on the first road of its route. Caller holds the store lock.
+    private Vehicle addVehicle(String id, VehicleType type, Node end, CompiledRoute route) {
+        Vehicle v = vehicles.add(id, type, end, route);
+        v.departTick = tickCount;
+        if (route.length() > 1) enterEdge(v); // Add to the first edge's queue
+        spatialIndex.update(v);
+        if (events != null) events.vehiclePlaced(v.slot(), tickCount);
+        return v;
+    }
 
-            if (visited.contains(current.id)) continue;
-            visited.add(current.id);
+    // Spawns many trips at once. Trips are grouped by origin and the origins are searched in parallel on the batch worker pool if one
+    // is configured. With the default Dijkstra strategy, each origin asks the route cache first and runs one shortest-path-tree
+    // search for the destinations it missed, whose routes are then offered to the cache. Any other strategy (A*, ALT, CCH) routes
+    // trip by trip through the configured router and its cache, so background traffic follows the strategy chosen at startup.
+    // Vehicles are then created in request order, so IDs stay deterministic. Returns the number of vehicles spawned; trips without
+    // a path are skipped.
+    public int spawnBatch(List<TripRequest> trips) {
+        synchronized (vehicles) {
+            return acceptInput("batch", encodeTrips(trips)) ? spawnTrips(trips) : 0;
+        }
+    }
 
-            if (current == end) break;
-            if (currentPQ.cost > distances.get(current.id)) continue;
+    // The batch searches only read edge weights, so the workers may run them while the caller holds the store lock.
+    private int spawnTrips(List<TripRequest> trips) {
+        CsrGraph g = graph.csr;
+        Map<Integer, List<Integer>> byOrigin = new LinkedHashMap<>(); // Origin index -> positions in trips
+        for (int i = 0; i < trips.size(); i++) {
+            int origin = g.indexOf(trips.get(i).start.id);
+            if (origin < 0 || g.indexOf(trips.get(i).end.id) < 0) continue;
+            byOrigin.computeIfAbsent(origin, k -> new ArrayList<>()).add(i);
+        }
 
-            for (Edge edge : graph.adjList.get(current.id)) {
-                double newDist = distances.get(current.id) + edge.getCurrentWeight();
-                if (newDist < distances.get(edge.target.id)) {
-                    distances.put(edge.target.id, newDist);
-                    previous.put(edge.target.id, current);
-                    queue.add(new PQNode(edge.target, newDist));
+        // The cache is asked and filled on this thread in a fixed order, so its contents never depend on the worker timing
+        int[][] routes = new int[trips.size()][];
+        int[] targetOf = new int[trips.size()];
+        RoutingStrategy strategy = router;
+        RouteCache cache = (strategy instanceof RouteCache) ? (RouteCache) strategy : null;
+        RoutingStrategy base = (cache != null) ? cache.getDelegate() : strategy;
+        boolean oneToMany = base.getClass() == DijkstraRouter.class; // Same routes as the strategy, one search per origin
+        List<Callable<Void>> searches = new ArrayList<>();
+        List<Integer> searched = new ArrayList<>(); // Positions whose route comes from a search, in request order
+        for (Map.Entry<Integer, List<Integer>> group : byOrigin.entrySet()) {
+            int origin = group.getKey();
+            List<Integer> missed = new ArrayList<>();
+            for (int position : group.getValue()) {
+                targetOf[position] = g.indexOf(trips.get(position).end.id);
+                if (cache != null) routes[position] = cache.lookup(origin, targetOf[position]);
+                if (routes[position] == null) missed.add(position);
+            }
+            if (missed.isEmpty()) continue;
+            searched.addAll(missed);
+            searches.add(() -> {
+                if (oneToMany) {
+                    int[] targets = new int[missed.size()];
+                    for (int k = 0; k < targets.length; k++) targets[k] = targetOf[missed.get(k)];
+                    int[][] found = batchRouter.routeToAll(origin, targets);
+                    for (int k = 0; k < targets.length; k++) routes[missed.get(k)] = found[k];
+                } else {
+                    for (int position : missed) routes[position] = base.route(origin, targetOf[position]);
                 }
+                return null;
+            });
+        }
+
+        ExecutorService pool = batchPool;
+        try {
+            if (pool != null && searches.size() > 1) {
+                for (Future<Void> f : pool.invokeAll(searches)) f.get();
+            } else {
+                for (Callable<Void> search : searches) search.call();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (Exception e) {
+            throw new IllegalStateException("Batch route search failed", e);
         }
-        
-        // Reconstruct path
-        List<Node> path = new ArrayList<>();
-        Node curr = end;
-        if (distances.get(end.id) == Double.MAX_VALUE) return null; // No path found
 
-        while (curr != null) {
-            path.add(0, curr);
-            curr = previous.get(curr.id);
+        if (cache != null) {
+            searched.sort(null);
+            for (int position : searched) {
+                int[] route = routes[position];
+                if (route != null) cache.offer(route[0], targetOf[position], route);
+            }
         }
 
-        if (path.isEmpty() || path.get(0) != start) return null;
+        int spawned = 0;
+        for (int i = 0; i < trips.size(); i++) {
+            if (routes[i] == null) continue;
+            TripRequest trip = trips.get(i);
+            createVehicle(trip.end, trip.type, vehicles.routes().intern(routes[i]));
+            spawned++;
+        }
+        return spawned;
+    }
 
-        return path;
+    // Sets how many worker threads spawnBatch may use for its per-origin searches (0 or 1 = run on the calling thread).
+    public synchronized void setBatchWorkers(int workers) {
+        if (batchPool != null) batchPool.shutdown();
+        batchPool = null;
+        if (workers > 1) {
+            batchPool = Executors.newFixedThreadPool(workers, r -> {
+                Thread t = new Thread(r, "batch-routing");
+                t.setDaemon(true);
+                return t;
+            });
+        }
     }
 
-    // Helper class for Priority Queue in Dijkstra
-    private static class PQNode implements Comparable<PQNode> {
-        Node node;
-        double cost;
-        public PQNode(Node node, double cost) { this.node = node; this.cost = cost; }
-        @Override public int compareTo(PQNode o) { return Double.compare(this.cost, o.cost); }
+    // Switches between the classic tick (threads = 0) and the region-partitioned tick on a fork/join pool of the given size.
+    // The graph is split into 'regionCount' regions; for a fixed region count, every thread count produces the same simulation.
+    public void setTickThreads(int threads, int regionCount) {
+        synchronized (vehicles) {
+            if (tickPool != null) tickPool.shutdown();
+            tickPool = null;
+            regions = null;
+            regionLanes = null;
+            if (threads <= 0) return;
+            regions = new RegionPartition(graph.csr, regionCount);
+            regionLanes = new TickLane[regions.regionCount()];
+            for (int r = 0; r < regionLanes.length; r++) regionLanes[r] = new TickLane(r);
+            tickPool = new ForkJoinPool(threads, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("tick-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false);
+        }
     }
 
-    // Calculates a path and spawns a new vehicle into the simulation.
-    public boolean spawnVehicle(Node start, Node end, VehicleType type) {
-        List<Node> path = findPath(start, end);
-        if (path != null) {
-            String id = type.toString().substring(0, 3) + (carIdCounter++);
-            Vehicle v = new Vehicle(id, type, start, end, path);
-
-            // Add to the first edge's queue
-            if (path.size() > 1) {
-                Edge firstEdge = graph.getEdge(start.id, path.get(1).id);
-                if (firstEdge != null) {
-                    v.currentEdgeObj = firstEdge;
-                    v.entryTime = System.nanoTime();
-                    firstEdge.vehicleQueue.add(v);
+    // Copies the complete state at the current tick boundary (see Checkpoint). Runs under the store lock but only copies arrays and
+    // references, so it holds up the tick for well under a frame; writing the result to disk happens on the caller's thread.
+    public Checkpoint checkpoint() {
+        synchronized (vehicles) {
+            Checkpoint c = new Checkpoint();
+            CsrGraph g = graph.csr;
+            VehicleStore s = vehicles;
+            if (events != null) {
+                events.refreshPositions(tickCount); // The event mode only interpolates progress on demand
+                events.syncLights(tickCount);
+            }
+            c.nodeCount = g.nodeCount;
+            c.edgeCount = g.edgeCount;
+            c.tickCount = tickCount;
+            c.pendingTime = pendingTime;
+            c.carIdCounter = carIdCounter;
+            c.seed = seed;
+            c.random = serialize(random);
+            c.generator = generating;
+            if (demand != null) {
+                c.demandSpec = demand.getSpec();
+                c.demandCredits = demand.credits();
+                c.demandNextTrip = demand.nextTrip();
+                c.demandTrips = demand.getTripsGenerated();
+            }
+            c.userRole = currentUserRole;
+            c.userId = currentUserId;
+            c.deterministic = deterministic;
+            c.epochWeights = deterministic ? epochWeights : null; // Never modified once an epoch started, so it can be shared
+            RouteCache cache = getRouteCache();
+            c.routeCache = (cache != null) ? cache.snapshot() : null;
+
+            c.lightNodes = intersections.clone();
+            c.lightGreen = new boolean[intersections.length];
+            c.lightTimers = new int[intersections.length];
+            c.lightUpdates = new long[intersections.length];
+            for (int i = 0; i < intersections.length; i++) {
+                TrafficLight light = g.nodes[intersections[i]].trafficLight;
+                c.lightGreen[i] = light.northSouthGreen;
+                c.lightTimers[i] = light.timer;
+                c.lightUpdates[i] = light.getUpdates();
+            }
+
+            int live = s.size();
+            c.highWater = s.highWater();
+            c.freeSlots = s.freeSlots();
+            c.slots = new int[live];
+            c.ids = new String[live];
+            c.types = new byte[live];
+            c.destinations = new int[live];
+            c.pathRefs = new int[live];
+            c.pathIndices = new int[live];
+            c.progress = new double[live];
+            c.returning = new boolean[live];
+            c.departTicks = new long[live];
+            int n = 0;
+            for (int slot = 0; slot < c.highWater; slot++) {
+                Vehicle v = s.handles[slot];
+                if (v == null) continue;
+                c.slots[n] = slot;
+                c.ids[n] = v.id;
+                c.types[n] = s.types[slot];
+                c.destinations[n] = v.destination.index;
+                c.pathRefs[n] = c.pathRef(v.route);
+                c.pathIndices[n] = s.pathIndex[slot];
+                c.progress[n] = s.progress[slot];
+                c.returning[n] = v.isReturning;
+                c.departTicks[n] = v.departTick;
+                n++;
+            }
+
+            List<Integer> queued = new ArrayList<>();
+            for (int e = 0; e < g.edgeCount; e++) if (!g.edges[e].vehicleQueue.isEmpty()) queued.add(e);
+            c.queueEdges = new int[queued.size()];
+            c.queueSlots = new int[queued.size()][];
+            for (int i = 0; i < c.queueEdges.length; i++) {
+                c.queueEdges[i] = queued.get(i);
+                Vehicle[] order = g.edges[queued.get(i)].vehicleQueue.toArray();
+                c.queueSlots[i] = new int[order.length];
+                for (int k = 0; k < order.length; k++) c.queueSlots[i][k] = order[k].slot();
+            }
+
+            List<TimerWheel.Timer<BusWave>> waves = busWaves.pending();
+            c.waveDue = new long[waves.size()];
+            c.waveNumbers = new int[waves.size()];
+            c.waveRoutes = new int[waves.size()][];
+            for (int i = 0; i < c.waveDue.length; i++) {
+                BusWave w = waves.get(i).payload;
+                c.waveDue[i] = waves.get(i).due;
+                c.waveNumbers[i] = w.wave;
+                c.waveRoutes[i] = new int[w.routes.size()];
+                for (int k = 0; k < w.routes.size(); k++) c.waveRoutes[i][k] = c.pathRef(w.routes.get(k));
+            }
+            return c;
+        }
+    }
+
+    // Replaces the whole simulation state with a checkpoint taken on the same map. Routing caches start a new congestion epoch and
+    // the dynamic rerouter starts over; everything that decides the vehicles' movement continues exactly where the checkpoint left off.
+    public void restore(Checkpoint c) {
+        synchronized (vehicles) {
+            CsrGraph g = graph.csr;
+            if (c.nodeCount != g.nodeCount || c.edgeCount != g.edgeCount) {
+                throw new IllegalArgumentException("Checkpoint was taken on another map (" + c.nodeCount + " nodes, " + c.edgeCount + " roads)");
+            }
+            if (inputLog != null || replay != null) throw new IllegalStateException("Cannot restore a checkpoint while recording or replaying inputs");
+            if (events != null) events.clear();
+            vehicles.clear();
+            for (Edge e : g.edges) e.vehicleQueue.clear();
+            approachLoads.clear();
+            spatialIndex.clearVehicles();
+            busWaves.reset(c.tickCount);
+            synchronized (emigrants) {
+                emigrants.clear();
+            }
+
+            tickCount = c.tickCount;
+            pendingTime = c.pendingTime;
+            carIdCounter = c.carIdCounter;
+            seed = c.seed;
+            random = (Random) deserialize(c.random);
+            deterministic = c.deterministic;
+            generating = c.generator;
+            demand = (c.demandSpec == null) ? null : DemandModel.parse(c.demandSpec, graph, "checkpoint");
+            if (demand != null) demand.restoreProgress(c.demandCredits, c.demandNextTrip, c.demandTrips);
+
+            List<CompiledRoute> paths = new ArrayList<>(c.paths.length);
+            for (int[] path : c.paths) paths.add(vehicles.routes().intern(path));
+            VehicleStore s = vehicles;
+            s.restoreLayout(c.highWater, c.freeSlots);
+            for (int i = 0; i < c.slots.length; i++) {
+                Vehicle v = s.addAt(c.slots[i], c.ids[i], VehicleStore.TYPES[c.types[i]], g.nodes[c.destinations[i]], paths.get(c.pathRefs[i]));
+                v.isReturning = c.returning[i];
+                v.departTick = c.departTicks[i];
+                s.setPathPosition(c.slots[i], c.pathIndices[i]);
+                s.progress[c.slots[i]] = c.progress[i];
+                spatialIndex.update(v);
+            }
+            for (int i = 0; i < c.queueEdges.length; i++) {
+                for (int slot : c.queueSlots[i]) {
+                    Vehicle v = s.handles[slot];
+                    enterEdge(v); // In saved order, so each priority lane keeps its order
+                    if (s.edgeIds[slot] != c.queueEdges[i]) throw new IllegalStateException("Checkpoint queue of road " + c.queueEdges[i] + " holds " + v.id + ", which is not on it");
                 }
             }
-            vehicles.add(v);
-            return true;
+            for (int i = 0; i < c.lightNodes.length; i++) { // After the queues, which bring lights up to date as they fill up
+                g.nodes[c.lightNodes[i]].trafficLight.restore(c.lightGreen[i], c.lightTimers[i], c.lightUpdates[i]);
+            }
+            for (int i = 0; i < c.waveDue.length; i++) {
+                List<CompiledRoute> routes = new ArrayList<>();
+                for (int ref : c.waveRoutes[i]) routes.add(paths.get(ref));
+                busWaves.schedule(c.waveDue[i], new BusWave(c.waveNumbers[i], routes));
+            }
+
+            RouteCache cache = getRouteCache();
+            if (cache != null && c.routeCache != null) cache.restore(c.routeCache);
+            else if (cache != null) cache.clear();
+            if (c.epochWeights != null && c.epochWeights.length == g.edgeCount) useEpochWeights(c.epochWeights);
+            else advanceCongestionEpoch(); // Routing structures were priced against the state before the restore
+            if (rerouter != null) rerouter.reset();
+            if (events != null) events.start(tickCount);
+            applyUser(c.userRole, c.userId);
+        }
+    }
+
+    // Java serialization is the only way to carry the exact state of a java.util.Random.
+    private static byte[] serialize(Object value) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sharded mode (see ShardNode): from now on this engine only simulates the roads whose target node lies in 'district' of the
+    // partition. Vehicles turning onto any other road leave through takeEmigrants(); vehicles from other shards come in through admit().
+    void setDistrict(RegionPartition districts, int district) {
+        synchronized (vehicles) {
+            CsrGraph g = graph.csr;
+            foreignEdges = new boolean[g.edgeCount];
+            for (int e = 0; e < g.edgeCount; e++) foreignEdges[e] = districts.regionOf(g.targets[e]) != district;
+        }
+    }
+
+    // Removes every vehicle that turned onto a foreign road since the last call and returns it as a Migrant, in slot order.
+    List<Migrant> takeEmigrants() {
+        synchronized (vehicles) {
+            int[] slots;
+            synchronized (emigrants) {
+                slots = emigrants.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+                emigrants.clear();
+            }
+            VehicleStore s = vehicles;
+            CsrGraph g = graph.csr;
+            List<Migrant> out = new ArrayList<>(slots.length);
+            for (int slot : slots) {
+                Vehicle v = s.handles[slot];
+                if (v == null || s.edgeIds[slot] >= 0 || s.nextNodes[slot] < 0) continue; // Gone, or back on a road of this shard
+                int e = s.routeEdge(slot);
+                if (e >= 0 && !foreignEdges[e]) { // Rerouted onto a local road in the meantime
+                    enterEdge(v);
+                    continue;
+                }
+                out.add(new Migrant(v.id, v.type, v.destination.index, v.route.nodes, s.pathIndex[slot], v.isReturning, s.progress[slot],
+                        v.departTick));
+                removeVehicle(v);
+            }
+            return out;
         }
-        return false;
     }
 
-    // Defines bus routes and schedules their dispatch in waves using a separate thread.
+    // Puts vehicles handed over by other shards on their roads, in the given order.
+    void admit(List<Migrant> arrivals) {
+        synchronized (vehicles) {
+            for (Migrant m : arrivals) {
+                Vehicle v = vehicles.add(m.id, m.type, graph.csr.nodes[m.destination], vehicles.routes().intern(m.path));
+                int slot = v.slot();
+                v.isReturning = m.returning;
+                v.departTick = m.departTick;
+                vehicles.setPathPosition(slot, m.pathIndex);
+                vehicles.progress[slot] = m.progress;
+                enterEdge(v);
+                spatialIndex.update(v);
+                if (events != null) events.vehiclePlaced(slot, tickCount);
+            }
+        }
+    }
+
+    // Switches between the time-stepped tick and the discrete-event mode (see EventDrivenMode). Can be changed between ticks;
+    // vehicles and lights carry over. The event mode runs on the tick thread and ignores the region-partitioned tick.
+    public void setEventDriven(boolean enabled) {
+        synchronized (vehicles) {
+            if (enabled && events == null) {
+                events = new EventDrivenMode(this, vehicles, graph.csr, approachLoads);
+                events.start(tickCount);
+            } else if (!enabled && events != null) {
+                events.stop(tickCount);
+                events = null;
+            }
+        }
+    }
+
+    public boolean isEventDriven() {
+        return events != null;
+    }
+
+    // Events processed so far by the discrete-event mode (0 in the time-stepped mode).
+    public long getEventsProcessed() {
+        EventDrivenMode ev = events;
+        return ev == null ? 0 : ev.getEventsProcessed();
+    }
+
+    // Defines bus routes and dispatches them in three waves, 25 simulated seconds apart, on the engine's timer wheel.
+    // Pending waves are cancelled by a reset.
     public void spawnBusRoute(String driverId) {
-        int[] ids1 = {71, 2, 16, 15, 14, 17, 7, 8, 9, 4, 3, 4, 2, 71};
-        int[] ids2 = {72, 18, 17, 14, 15, 16, 1, 6, 5, 4, 9, 8, 7, 17, 18, 72};
-        int[] ids3 = {73, 9, 8, 10, 82, 11, 12, 13, 14, 17, 7, 8, 9, 73};
-
-        List<Node> route1 = new ArrayList<>(); for (int id : ids1) route1.add(graph.nodes.get(id));
-        List<Node> route2 = new ArrayList<>(); for (int id : ids2) route2.add(graph.nodes.get(id));
-        List<Node> route3 = new ArrayList<>(); for (int id : ids3) route3.add(graph.nodes.get(id));
-
-        // Group 1 (Starts immediately)
-        createBusAndAddToQueue("BUS-1A", route1);
-        createBusAndAddToQueue("BUS-1B", route2);
-        createBusAndAddToQueue("BUS-1C", route3);
-
-        busScheduleThread = new Thread(() -> {
-            try {
-                Thread.sleep(25000); // Wait 25 seconds for Group 2
-                if (Thread.currentThread().isInterrupted()) return;
-                createBusAndAddToQueue("BUS-2A", route1);
-                createBusAndAddToQueue("BUS-2B", route2);
-                createBusAndAddToQueue("BUS-2C", route3);
-
-                Thread.sleep(25000); // Wait another 25 seconds for Group 3
-                if (Thread.currentThread().isInterrupted()) return;
-                createBusAndAddToQueue("BUS-3A", route1);
-                createBusAndAddToQueue("BUS-3B", route2);
-                createBusAndAddToQueue("BUS-3C", route3);
-
-            } catch (InterruptedException e) { // Thread interrupted
+        synchronized (vehicles) {
+            if (acceptInput("buses", driverId)) dispatchBuses();
+        }
+    }
+
+    private void dispatchBuses() {
+        List<CompiledRoute> routes = busRoutes();
+        createBusWave(1, routes); // Group 1 (Starts immediately)
+        busWaves.schedule(tickCount + BUS_WAVE_INTERVAL_TICKS, new BusWave(2, routes));
+        busWaves.schedule(tickCount + 2 * BUS_WAVE_INTERVAL_TICKS, new BusWave(3, routes));
+    }
+
+    // One bus per line; the suffix (A, B, C) selects the line colour in the GUI.
+    private void createBusWave(int wave, List<CompiledRoute> routes) {
+        for (int i = 0; i < routes.size(); i++) {
+            createBusAndAddToQueue("BUS-" + wave + (char) ('A' + i), routes.get(i));
+        }
+    }
+
+    // The three lines of the built-in city. On other maps (imported or generated) each of up to three parking lots gets
+    // a loop line out to the farthest apartment and back. Every bus of a line shares the line's interned route.
+    private List<CompiledRoute> busRoutes() {
+        int[][] builtIn = {
+                {71, 2, 16, 15, 14, 17, 7, 8, 9, 4, 3, 4, 2, 71},
+                {72, 18, 17, 14, 15, 16, 1, 6, 5, 4, 9, 8, 7, 17, 18, 72},
+                {73, 9, 8, 10, 82, 11, 12, 13, 14, 17, 7, 8, 9, 73}
+        };
+        List<CompiledRoute> routes = new ArrayList<>();
+        for (int[] ids : builtIn) {
+            int[] route = new int[ids.length];
+            int length = 0;
+            for (int i = 0; i < ids.length; i++) {
+                Node n = graph.nodes.get(ids[i]);
+                if (n == null || (i > 0 && graph.getEdge(ids[i - 1], ids[i]) == null)) break;
+                route[length++] = n.index;
             }
-        });
-        busScheduleThread.start();
+            if (length == ids.length) routes.add(vehicles.routes().intern(route));
+        }
+        if (routes.size() == builtIn.length) return routes;
+
+        routes.clear();
+        List<Node> apartments = graph.nodesOfType(NodeType.APARTMENT);
+        List<Node> parkings = graph.nodesOfType(NodeType.PARKING);
+        for (int i = 0; i < Math.min(3, parkings.size()) && !apartments.isEmpty(); i++) {
+            Node depot = parkings.get(i);
+            Node far = apartments.get(0);
+            for (Node a : apartments) {
+                if (Math.hypot(a.x - depot.x, a.y - depot.y) > Math.hypot(far.x - depot.x, far.y - depot.y)) far = a;
+            }
+            CompiledRoute out = findRoute(depot, far);
+            CompiledRoute back = findRoute(far, depot);
+            if (out == null || back == null) continue;
+            int[] loop = Arrays.copyOf(out.nodes, out.nodes.length + back.nodes.length - 1);
+            System.arraycopy(back.nodes, 1, loop, out.nodes.length, back.nodes.length - 1);
+            routes.add(vehicles.routes().intern(loop));
+        }
+        return routes;
+    }
+
+    private void createBusAndAddToQueue(String id, CompiledRoute route) {
+        if (route.length() == 0) return;
+        synchronized (vehicles) {
+            addVehicle(id, VehicleType.BUS, route.last(), route);
+        }
+    }
+
+    // Takes a vehicle out of the simulation. Freeing its slot detaches the handle, which marks it as gone for anyone still holding it
+    // (e.g. a GUI selection).
+    private void removeVehicle(Vehicle v) {
+        leaveEdge(v);
+        spatialIndex.remove(v);
+        vehicles.remove(v); // O(1): frees the slot and pools the handle
+    }
+
+    // Puts a vehicle into the queue of the road at its route cursor (current node -> next node), read off its compiled route.
+    // It joins the tail of its priority's lane, behind every vehicle of the same priority that entered earlier.
+    // In sharded mode a road of another shard is not entered; the vehicle waits off-road until takeEmigrants() hands it over.
+    private void enterEdge(Vehicle v) {
+        enterEdge(v, null);
+    }
+
+    private void enterEdge(Vehicle v, TickLane lane) {
+        int e = vehicles.routeEdge(v.slot());
+        if (e >= 0 && foreignEdges != null && foreignEdges[e]) {
+            vehicles.edgeIds[v.slot()] = -1;
+            synchronized (emigrants) {
+                emigrants.add(v.slot()); // Region workers may get here concurrently; takeEmigrants() sorts the slots
+            }
+            return;
+        }
+        vehicles.edgeIds[v.slot()] = e;
+        if (e >= 0) {
+            Edge edge = graph.csr.edges[e];
+            edge.vehicleQueue.add(v);
+            EventDrivenMode ev = events;
+            if (ev != null) ev.beforeLoadChange(e, tickCount);
+            approachLoads.entered(e);
+            if (ev != null) ev.afterLoadChange(e, tickCount);
+            edgeChanged(edge, lane);
+        }
     }
 
-    private void createBusAndAddToQueue(String id, List<Node> route) {
-        if (route.isEmpty()) return;
-        Vehicle v = new Vehicle(id, VehicleType.BUS, route.get(0), route.get(route.size()-1), route);
+    // Removes a vehicle from the queue of the road it is currently on.
+    private void leaveEdge(Vehicle v) {
+        leaveEdge(v, null);
+    }
 
-        if (route.size() > 1) {
-            Edge e = graph.getEdge(route.get(0).id, route.get(1).id);
-            if (e != null) {
-                v.currentEdgeObj = e;
-                v.entryTime = System.nanoTime();
-                e.vehicleQueue.add(v);
+    private void leaveEdge(Vehicle v, TickLane lane) {
+        int slot = v.slot();
+        int e = vehicles.edgeIds[slot];
+        if (e >= 0) {
+            Edge edge = graph.csr.edges[e];
+            edge.vehicleQueue.remove(v);
+            EventDrivenMode ev = events;
+            if (ev != null) ev.beforeLoadChange(e, tickCount);
+            approachLoads.left(e);
+            vehicles.edgeIds[slot] = -1;
+            if (ev != null) {
+                ev.afterLoadChange(e, tickCount);
+                ev.edgeLeft(e, tickCount);
             }
+            edgeChanged(edge, lane);
+        }
+    }
+
+    // Tells the rerouter that a road's cost changed. A region worker only notes the road in its lane: tickRegions() passes the
+    // lanes' changes on in region order, so the change log, and every reroute decided from it, is the same for any thread count.
+    private void edgeChanged(Edge edge, TickLane lane) {
+        DynamicRerouter r = rerouter;
+        if (r == null) return;
+        if (lane != null && lane.isBound()) lane.edgeChanged(edge.id);
+        else r.edgeChanged(edge);
+    }
+
+    // Advances the simulation by dt seconds of simulated time using fixed ticks. Leftover time smaller than a tick is carried over
+    // to the next call, so any dt sequence yields the same ticks as calling tick() directly. Returns the number of ticks run.
+    // Must not be called while the run loop is active.
+    public int step(double dt) {
+        if (running) throw new IllegalStateException("step() called while the run loop is active");
+        pendingTime += dt;
+        int ticks = 0;
+        while (pendingTime >= TICK_SECONDS - 1e-9) {
+            tick();
+            pendingTime -= TICK_SECONDS;
+            ticks++;
         }
-        vehicles.add(v);
+        return ticks;
     }
 
-    // Main Simulation Loop. Updates vehicle positions, traffic lights, and repaints the UI.
-    @Override
-    public void run() {
-        while (true) {
-            try {
-                for (Vehicle v : vehicles) {
-                    moveVehicle(v);
+    // One simulation tick: moves every vehicle (walking the store's slots in order), updates the traffic lights and notifies the listeners.
+    public void tick() {
+        long ticks;
+        synchronized (vehicles) {
+            if (replay != null) applyReplayedInputs();
+            if (events != null) {
+                events.run(tickCount);
+            } else if (regions != null) {
+                tickRegions();
+            } else {
+                sequentialLane.begin();
+                for (int slot = 0; slot < vehicles.highWater(); slot++) {
+                    if (vehicles.handles[slot] != null) moveVehicle(slot, sequentialLane);
                 }
                 updateLights();
-                if (panel != null) panel.repaint();
-                Thread.sleep(50);
-            } catch (InterruptedException e) { e.printStackTrace(); }
+            }
+            DynamicRerouter r = rerouter;
+            if (r != null) r.tick(vehicles);
+            ticks = ++tickCount;
+            // Work scheduled on the simulation clock runs before the lock is released, ahead of any outside input for the next tick
+            if (generating && demand != null) runDemand(ticks);
+            busWaves.advance(ticks, dispatchWave); // O(1) per tick: one wheel bucket
+            if (ticks % CONGESTION_EPOCH_TICKS == 0) advanceCongestionEpoch();
+            // Only viewers need interpolated positions; the run loop refreshes them once per frame instead
+            if (events != null && !running && !listeners.isEmpty()) events.refreshPositions(ticks);
         }
+        for (SimulationListener l : listeners) l.tickCompleted(this);
     }
 
-    // Handles movement logic, traffic light checks, and priority queues.
-    private void moveVehicle(Vehicle v) {
-        if (v.path.isEmpty() || v.next == null) return;
+    // Region-partitioned tick. Vehicles are bucketed (in slot order) by the region that owns their road, and the regions move in parallel.
+    // Vehicles that crossed into another region's road or finished their path are then handed over on this thread, region by region
+    // in deferral order (each region's road changes and spatial index moves are applied first), and finally every region updates its
+    // own lights. Each phase only touches state owned by its region, so the outcome is the same for any number of pool threads.
+    private void tickRegions() {
+        CsrGraph g = graph.csr;
+        VehicleStore s = vehicles;
+        RegionPartition partition = regions;
+        TickLane[] lanes = regionLanes;
+        for (TickLane lane : lanes) lane.begin();
+        for (int slot = 0; slot < s.highWater(); slot++) {
+            if (s.handles[slot] == null || s.nextNodes[slot] < 0) continue;
+            int e = s.edgeIds[slot];
+            lanes[partition.regionOf(e >= 0 ? g.targets[e] : s.currentNodes[slot])].add(slot);
+        }
 
-        // 1. Calculate movement vector and speed
-        double dx = v.next.x - v.current.x;
-        double dy = v.next.y - v.current.y;
-        double distance = Math.sqrt(dx * dx + dy * dy);
-        double normalizedSpeed = (v.type.speed * 300.0) / Math.max(distance, 1.0);
+        runLanes(lanes, lane -> {
+            for (int k = 0; k < lane.slotCount; k++) moveVehicle(lane.slots[k], lane);
+        });
 
-        // 2. Look-ahead check: Stop if approaching a red light or occupied intersection
-        if (v.progress + normalizedSpeed >= 1.0 && v.next.type == NodeType.INTERSECTION) {
-            TrafficLight light = v.next.trafficLight;
-            boolean lightGreen = light.canPass(v.current, v.next);
+        DynamicRerouter r = rerouter;
+        for (TickLane lane : lanes) {
+            if (r != null) {
+                for (int k = 0; k < lane.changedCount; k++) r.edgeChanged(g.edges[lane.changedEdges[k]]);
+            }
+            for (int k = 0; k < lane.recellCount; k++) spatialIndex.update(s.handles[lane.recells[k]]);
+            for (int k = 0; k < lane.deferredCount; k++) {
+                int slot = lane.deferred[k] >>> 1;
+                Vehicle v = s.handles[slot];
+                if ((lane.deferred[k] & 1) != 0) {
+                    handleEndOfPath(v);
+                } else {
+                    enterEdge(v);
+                }
+                if (v.isActive()) spatialIndex.update(v);
+            }
+        }
+
+        runLanes(lanes, lane -> {
+            for (int node : partition.intersections(lane.region)) updateLight(g.nodes[node]);
+        });
+    }
 
-            Vehicle topPriority = null;
-            if (v.currentEdgeObj != null) {
-                topPriority = v.currentEdgeObj.vehicleQueue.peek();
+    // Runs one phase on every lane and waits for all of them. An interrupt does not cut the wait short (the phase would be left
+    // half applied); it is re-asserted once every lane has finished.
+    private void runLanes(TickLane[] lanes, Consumer<TickLane> work) {
+        List<Future<Void>> futures = new ArrayList<>(lanes.length);
+        for (TickLane lane : lanes) {
+            futures.add(tickPool.submit(() -> {
+                work.accept(lane);
+                return null;
+            }));
+        }
+        boolean interrupted = false;
+        try {
+            for (Future<Void> f : futures) {
+                while (true) {
+                    try {
+                        f.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
             }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Region tick failed", e);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    // Simulated seconds since the engine was created.
+    public double getSimulationTime() {
+        return tickCount * TICK_SECONDS;
+    }
 
-            // Check if this vehicle is the one allowed to move from the queue
-            boolean amIPriority = (topPriority == null || topPriority == v);
-            boolean isEmergency = (v.type.priority <= 3);
+    // Rate the run loop aims for, in ticks per second of wall-clock time. 20 is real time; 0 runs as fast as possible.
+    public void setTargetTicksPerSecond(double ticksPerSecond) {
+        this.targetTicksPerSecond = Math.max(0, ticksPerSecond);
+    }
+
+    public double getTargetTicksPerSecond() {
+        return targetTicksPerSecond;
+    }
+
+    // Time warp: simulated seconds per wall-clock second (1 = real time, 10, 100, ...); 0 runs as fast as possible.
+    public void setSpeed(double multiplier) {
+        setTargetTicksPerSecond(multiplier / TICK_SECONDS);
+    }
+
+    public double getSpeed() {
+        return targetTicksPerSecond * TICK_SECONDS;
+    }
+
+    // Frames in which the engine could not keep up with the requested speed and dropped the ticks it owed.
+    public long getTickOverruns() {
+        return tickOverruns;
+    }
 
-            if (isEmergency) {
-                if (!amIPriority) return; // Emergency vehicles only stop if another vehicle is physically blocking
+    public long getFrameCount() {
+        return frames;
+    }
+
+    // Starts the run loop on its own thread. Does nothing if it is already running.
+    public synchronized void start() {
+        if (loop != null) return;
+        running = true;
+        loop = new Thread(this::runLoop, "simulation");
+        loop.start();
+    }
+
+    // Stops the run loop and waits for the current tick to finish. The loop is woken from its sleep rather than interrupted,
+    // so a tick in progress always completes.
+    public synchronized void stop() {
+        Thread t = loop;
+        if (t == null) return;
+        running = false;
+        synchronized (pacer) {
+            pacer.notifyAll();
+        }
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        loop = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Main Simulation Loop. Time is cut into frames at the display rate; each frame runs the ticks the speed owes it (a fraction
+    // carries over, so 1x runs a tick every third frame and 100x about 33 per frame) and then notifies the viewers once, so the
+    // repaint rate does not grow with the speed. Frames are paced against a deadline and the sleep only covers what is left of the
+    // frame budget; at full speed a frame runs ticks until its budget is used up. A frame whose budget runs out with ticks still
+    // owed counts a tick overrun: the engine cannot keep up with the speed, so the owed ticks are dropped instead of bursting
+    // later, and the display keeps its rate.
+    private void runLoop() {
+        long frameNanos = (long) (1e9 / FRAME_RATE);
+        long deadline = System.nanoTime();
+        double owed = 0; // Ticks due but not yet run, fractional
+        while (running) {
+            deadline += frameNanos;
+            double rate = targetTicksPerSecond;
+            if (rate <= 0) {
+                do {
+                    tick();
+                } while (running && System.nanoTime() - deadline < 0);
+                owed = 0;
             } else {
-                if (!lightGreen || !amIPriority) return; // Normal vehicles stop at red lights or if not priority
+                owed += rate / FRAME_RATE;
+                while (running && owed >= 1) {
+                    tick();
+                    owed -= 1;
+                    if (owed >= 1 && System.nanoTime() - deadline >= 0) {
+                        tickOverruns++;
+                        owed -= Math.floor(owed);
+                    }
+                }
+            }
+            completeFrame();
+            if (deadline - System.nanoTime() <= 0) {
+                deadline = System.nanoTime(); // Behind schedule: start the next frame from now
+                continue;
+            }
+            if (!sleepUntil(deadline)) break;
+        }
+    }
+
+    // Waits until the deadline or until stop() wakes the loop. Returns false if the thread was interrupted.
+    private boolean sleepUntil(long deadline) {
+        synchronized (pacer) {
+            long wait;
+            while (running && (wait = deadline - System.nanoTime()) > 0) {
+                try {
+                    pacer.wait(wait / 1_000_000, (int) (wait % 1_000_000));
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // End of a run loop frame: brings the drawn positions up to date and lets the viewers repaint.
+    private void completeFrame() {
+        frames++;
+        if (listeners.isEmpty()) return;
+        if (events != null) {
+            synchronized (vehicles) {
+                events.refreshPositions(tickCount);
             }
         }
+        for (SimulationListener l : listeners) l.frameCompleted(this);
+    }
+
+    // Handles movement logic, traffic light checks, and priority queues. Reads and writes the store arrays of one slot;
+    // Node and Edge objects are only touched when the vehicle reaches the end of its road.
+    private void moveVehicle(int slot, TickLane lane) {
+        VehicleStore s = vehicles;
+        if (s.nextNodes[slot] < 0) return;
+
+        // 1. Calculate speed as a fraction of the current road per tick
+        double normalizedSpeed = speedPerTick(slot);
+        double progress = s.progress[slot];
+
+        // 2. Look-ahead check: Stop if approaching a red light or occupied intersection
+        if (progress + normalizedSpeed >= 1.0 && !mayEnterNode(slot)) return;
 
         // 3. Move the vehicle
-        v.progress += normalizedSpeed;
+        progress += normalizedSpeed;
+        s.progress[slot] = progress;
+        Vehicle v = s.handles[slot];
 
         // 4. Handle reaching the next node
-        if (v.progress >= 1.0) {
-            v.progress = 0;
-            if (v.currentEdgeObj != null) v.currentEdgeObj.vehicleQueue.remove(v);
+        if (progress >= 1.0) reachNode(slot, lane);
+        if (!v.isActive()) return; // It just left the simulation
+        if (!lane.isBound()) {
+            spatialIndex.update(v);
+        } else if (spatialIndex.changesCell(v)) {
+            lane.cellChanged(slot); // The index is shared by all regions, so the re-bucketing waits for the handover
+        }
+    }
+
+    // Fraction of its current road a vehicle covers per tick.
+    double speedPerTick(int slot) {
+        VehicleStore s = vehicles;
+        CsrGraph g = graph.csr;
+        int from = s.currentNodes[slot], to = s.nextNodes[slot];
+        double dx = g.xs[to] - g.xs[from];
+        double dy = g.ys[to] - g.ys[from];
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        return (VehicleStore.TYPES[s.types[slot]].speed * 300.0) / Math.max(distance, 1.0);
+    }
+
+    // Whether a vehicle at the end of its road may enter the next node now: intersections hold normal vehicles at red lights,
+    // and every vehicle waits while another one is ahead of it in the road's priority queue.
+    boolean mayEnterNode(int slot) {
+        VehicleStore s = vehicles;
+        CsrGraph g = graph.csr;
+        Node next = g.nodes[s.nextNodes[slot]];
+        if (next.type != NodeType.INTERSECTION) return true;
+        boolean lightGreen = next.trafficLight.canPass(g.nodes[s.currentNodes[slot]], next);
+
+        Vehicle topPriority = null;
+        int edge = s.edgeIds[slot];
+        if (edge >= 0) {
+            topPriority = g.edges[edge].vehicleQueue.peek();
+        }
+
+        // Check if this vehicle is the one allowed to move from the queue
+        boolean amIPriority = (topPriority == null || topPriority == s.handles[slot]);
+        boolean isEmergency = (VehicleStore.TYPES[s.types[slot]].priority <= 3);
 
-            v.currentPathIndex++;
-            if (v.currentPathIndex >= v.path.size() - 1) {
-                handleEndOfPath(v);
+        if (isEmergency) {
+            return amIPriority; // Emergency vehicles only stop if another vehicle is physically blocking
+        }
+        return lightGreen && amIPriority; // Normal vehicles stop at red lights or if not priority
+    }
+
+    // Moves a vehicle that just reached the end of its road onto the next one, or finishes its path. A region-bound lane leaves hops
+    // into other regions and ends of path to the handover phase.
+    void reachNode(int slot, TickLane lane) {
+        VehicleStore s = vehicles;
+        Vehicle v = s.handles[slot];
+        leaveEdge(v, lane);
+
+        int pathIndex = s.pathIndex[slot] + 1;
+        if (pathIndex >= v.route.length() - 1) {
+            s.progress[slot] = 0;
+            if (lane.isBound()) lane.defer(slot, true);
+            else handleEndOfPath(v);
+        } else {
+            s.setPathPosition(slot, pathIndex);
+            int to = s.nextNodes[slot];
+            if (lane.isBound() && regions.regionOf(to) != lane.region) {
+                lane.defer(slot, false); // The new road's queue belongs to another region
             } else {
-                v.current = v.path.get(v.currentPathIndex);
-                v.next = v.path.get(v.currentPathIndex + 1);
-
-                Edge newEdge = graph.getEdge(v.current.id, v.next.id); // Add to the queue of the new road segment
-                if (newEdge != null) {
-                    v.currentEdgeObj = newEdge;
-                    v.entryTime = System.nanoTime();
-                    newEdge.vehicleQueue.add(v);
-                }
+                enterEdge(v, lane); // Add to the queue of the new road segment
             }
         }
     }
 
     // Determines what happens when a vehicle reaches its destination. Buses loop, Emergency vehicles return to base, others deleted.
+    // Reaching the destination completes a trip (buses and return legs do not count).
     private void handleEndOfPath(Vehicle v) {
         boolean isEmergency = (v.type == VehicleType.AMBULANCE || v.type == VehicleType.POLICE_CAR || v.type == VehicleType.FIRE_TRUCK);
+        int slot = v.slot();
+        if (v.type != VehicleType.BUS && !v.isReturning) {
+            for (SimulationListener l : listeners) l.tripCompleted(this, v, tickCount + 1 - v.departTick);
+        }
 
         if (v.type == VehicleType.BUS) { // Reset bus to start of the loop
-            v.currentPathIndex = 0;
-            v.current = v.path.get(0);
-            v.next = v.path.get(1);
-            v.progress = 0;
-
-            Edge newEdge = graph.getEdge(v.current.id, v.next.id);
-            if (newEdge != null) {
-                v.currentEdgeObj = newEdge;
-                v.entryTime = System.nanoTime();
-                newEdge.vehicleQueue.add(v);
-            }
+            vehicles.setPathPosition(slot, 0);
+            enterEdge(v);
             return;
         }
-        else if (isEmergency && !v.isReturning) { // Calculate return path for emergency vehicles
-            Node currentLoc = v.path.get(v.path.size()-1);
-            Node base = v.path.get(0);
-            List<Node> returnPath = findPath(currentLoc, base);
-            if (returnPath != null) {
-                v.path = returnPath;
-                v.currentPathIndex = 0;
-                v.current = returnPath.get(0);
-                v.next = returnPath.get(1);
+        else if (isEmergency && !v.isReturning) { // Return path for emergency vehicles: a walk down the station's precomputed tree
+            Node currentLoc = v.route.last();
+            Node base = v.route.first();
+            CompiledRoute returnPath = returnRoute(currentLoc, base);
+            if (returnPath != null && returnPath.length() > 1) {
+                v.route = returnPath;
                 v.destination = base;
                 v.isReturning = true;
-                Edge e = graph.getEdge(v.current.id, v.next.id);
-                if(e != null) {
-                    v.currentEdgeObj = e;
-                    v.entryTime = System.nanoTime();
-                    e.vehicleQueue.add(v);
-                }
+                vehicles.setPathPosition(slot, 0);
+                enterEdge(v);
             } else {
-                vehicles.remove(v);
+                removeVehicle(v);
             }
         }
         else { // Remove normal cars
-            v.next = null;
-            vehicles.remove(v);
+            removeVehicle(v);
         }
     }
 
-    // Updates traffic lights based on the load (queue size) of incoming roads.
-    private void updateLights() {
-        for (Node n : graph.nodes.values()) {
-            if (n.type == NodeType.INTERSECTION) {
-                int nsLoad = 0;
-                int ewLoad = 0;
-
-                // Calculate load for North-South and East-West directions
-                for (Map.Entry<Integer, List<Edge>> entry : graph.adjList.entrySet()) {
-                    Node fromNode = graph.nodes.get(entry.getKey());
-                    List<Edge> edges = entry.getValue();
-
-                    for (Edge e : edges) {
-                        if (e.target == n) {
-                            boolean isVertical = Math.abs(fromNode.y - n.y) > Math.abs(fromNode.x - n.x);
-                            if (isVertical) {
-                                nsLoad += e.vehicleQueue.size();
-                            } else {
-                                ewLoad += e.vehicleQueue.size();
-                            }
-                        }
-                    }
-                }
-                n.trafficLight.update(nsLoad, ewLoad);
-            }
+    // Route back to a station from its reverse shortest-path tree. Only bases that are not stations fall back to a search.
+    private CompiledRoute returnRoute(Node from, Node base) {
+        if (stationTrees.isStation(base.index)) {
+            int[] route = stationTrees.routeToStation(from.index, base.index);
+            return route == null ? null : vehicles.routes().intern(route);
         }
+        return findRoute(from, base);
     }
 
-    // Initialises random traffic and starts the background traffic generator.
+    // Updates traffic lights based on the load (queue size) of incoming roads, read from the approach counters in O(1).
+    private void updateLights() {
+        for (int node : intersections) updateLight(graph.csr.nodes[node]);
+    }
+
+    // Intersections with no vehicle on any incoming road are skipped; their light catches up on the idle ticks the next time it is
+    // updated, which gives the same phase as updating it every tick.
+    private void updateLight(Node n) {
+        if (approachLoads.isQuiet(n.index)) return;
+        n.trafficLight.catchUp(tickCount);
+        n.trafficLight.update(approachLoads.northSouth(n.index), approachLoads.eastWest(n.index));
+    }
+
+    // Initialises random traffic and starts the background traffic generator. Trips run between random apartments;
+    // emergency vehicles start from the first police station, hospital and fire station of the map.
     public void initializeTraffic() {
-        System.out.println("Fetching the city traffic data...");
-        Random R = new Random();
-        
-        // Spawn initial random cars
-        for(int i = 0; i < 20; i++) {
-            Node s = graph.nodes.get(R.nextInt(15) + 51);
-            Node e = graph.nodes.get(R.nextInt(15) + 51);
-            if (s != e) spawnVehicle(s, e, VehicleType.CAR);
+        synchronized (vehicles) {
+            if (acceptInput("init")) startTraffic();
         }
+    }
 
-        // Spawn initial emergency vehicles
-        Node startNode_P = graph.nodes.get(81);
-        Node endNode_P = graph.nodes.get(R.nextInt(15) + 51);
-        if (startNode_P != endNode_P) spawnVehicle(startNode_P, endNode_P, VehicleType.POLICE_CAR);
-
-        Node startNode_A = graph.nodes.get(82);
-        Node endNode_A = graph.nodes.get(R.nextInt(15) + 51);
-        if (startNode_A != endNode_A) spawnVehicle(startNode_A, endNode_A, VehicleType.AMBULANCE);
+    private void startTraffic() {
+        System.out.println("Fetching the city traffic data...");
+        Random R = random;
+        List<Node> apartments = graph.nodesOfType(NodeType.APARTMENT);
+        Node police = firstOfType(NodeType.POLICE);
+        Node hospital = firstOfType(NodeType.HOSPITAL);
+        Node fireStation = firstOfType(NodeType.FIRE_STATION);
 
-        Node startNode_F = graph.nodes.get(83);
-        Node endNode_F = graph.nodes.get(R.nextInt(15) + 51);
-        if (startNode_F != endNode_F) spawnVehicle(startNode_F, endNode_F, VehicleType.FIRE_TRUCK);
+        // Spawn initial random cars and emergency vehicles as one batch (one route search per distinct origin)
+        List<TripRequest> trips = new ArrayList<>();
+        if (!apartments.isEmpty()) {
+            for(int i = 0; i < 20; i++) {
+                Node s = randomNode(apartments, R);
+                Node e = randomNode(apartments, R);
+                if (s != e) trips.add(new TripRequest(s, e, VehicleType.CAR));
+            }
+            addEmergencyTrip(trips, police, randomNode(apartments, R), VehicleType.POLICE_CAR);
+            addEmergencyTrip(trips, hospital, randomNode(apartments, R), VehicleType.AMBULANCE);
+            addEmergencyTrip(trips, fireStation, randomNode(apartments, R), VehicleType.FIRE_TRUCK);
+        }
+        spawnTrips(trips);
 
         scatterVehiclesOnPath();
-        spawnBusRoute("SYSTEM_AUTO");
+        dispatchBuses();
+        generating = true; // From now on the demand model sends background traffic every tick
+    }
 
-        // Background thread to continuously generate new traffic
-        new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(1000);
-                    trafficLoopCount++;
+    // Spawns the background trips departing at this tick boundary as one batch, so their searches are grouped by origin.
+    // Called by the tick under the store lock.
+    private void runDemand(long now) {
+        departures.clear();
+        demand.arrivals(now, random, departures);
+        if (!departures.isEmpty()) spawnTrips(departures);
+    }
 
-                    if (!graph.nodes.isEmpty()) {
-                        Node s = graph.nodes.get(R.nextInt(15) + 51);
-                        Node e = graph.nodes.get(R.nextInt(15) + 51);
-                        if (s != e) spawnVehicle(s, e, VehicleType.CAR);
-                    }
-                    // Periodically spawn emergency vehicles
-                    if((trafficLoopCount % 10) == 0){
-                        spawnVehicle(graph.nodes.get(81), graph.nodes.get(R.nextInt(15) + 51), VehicleType.POLICE_CAR);
-                        spawnVehicle(graph.nodes.get(82), graph.nodes.get(R.nextInt(15) + 51), VehicleType.AMBULANCE);
-                        spawnVehicle(graph.nodes.get(83), graph.nodes.get(R.nextInt(15) + 51), VehicleType.FIRE_TRUCK);
-                    }
+    private static Node randomNode(List<Node> candidates, Random random) {
+        return candidates.get(random.nextInt(candidates.size()));
+    }
 
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    break;
-                }
-            }
-        }).start();
+    private Node firstOfType(NodeType type) {
+        List<Node> matches = graph.nodesOfType(type);
+        return matches.isEmpty() ? null : matches.get(0);
+    }
+
+    private static void addEmergencyTrip(List<TripRequest> trips, Node base, Node target, VehicleType type) {
+        if (base != null && base != target) trips.add(new TripRequest(base, target, type));
     }
 
     // Randomises the initial position of vehicles on their path to avoid clumping at start nodes.
     private void scatterVehiclesOnPath() {
-        for (Vehicle v : vehicles) {
-            if (v.type == VehicleType.BUS) continue;
-
-            if (v.path != null && v.path.size() > 2) {
-                int randomPathIndex = (int) (Math.random() * (v.path.size() - 1));
-                v.currentPathIndex = randomPathIndex;
-                v.current = v.path.get(randomPathIndex);
-                v.next = v.path.get(randomPathIndex + 1);
-                v.progress = Math.random();
+        synchronized (vehicles) {
+            for (Vehicle v : vehicles) {
+                if (v.type == VehicleType.BUS) continue;
+
+                if (v.route != null && v.route.length() > 2) {
+                    int randomPathIndex = random.nextInt(v.route.length() - 1);
+                    int slot = v.slot();
+                    leaveEdge(v);
+                    vehicles.setPathPosition(slot, randomPathIndex);
+                    vehicles.progress[slot] = random.nextDouble();
+                    enterEdge(v); // Queue on the road it was moved to
+                    if (events != null) events.vehiclePlaced(slot, tickCount);
+                    spatialIndex.update(v);
+                }
             }
         }
     }
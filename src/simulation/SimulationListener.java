@@ -0,0 +1,21 @@
+package simulation;
+
+import models.Vehicle;
+
+// Observer of a SimulationEngine. The engine knows nothing about Swing: the GUI (or a recorder, or a benchmark) attaches as a listener.
+// Callbacks run on the thread that drives the engine, so listeners must be quick and hand any UI work to their own thread.
+public interface SimulationListener {
+    // Called after every completed tick.
+    void tickCompleted(SimulationEngine engine);
+
+    // Called by the run loop once per frame (at most SimulationEngine.FRAME_RATE times a second, however many ticks the frame
+    // ran), e.g. to repaint. Not called when the ticks are driven through step() or tick().
+    default void frameCompleted(SimulationEngine engine) {}
+
+    // Called when a vehicle reaches its destination, with the trip's duration in ticks. Runs inside the tick, under the store lock.
+    default void tripCompleted(SimulationEngine engine, Vehicle vehicle, long ticks) {}
+
+    // Called when a user logs in with a role (CAR_DRIVER, BUS_DRIVER, EMERGENCY, FREE_VIEW). Runs on the thread that applied the change:
+    // the caller of setCurrentUser() or restore(), or the thread driving the ticks when a replayed input log sets the user.
+    default void userChanged(String role, String id) {}
+}
@@ -0,0 +1,187 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.CsrGraph;
+import models.Node;
+import models.Vehicle;
+
+// Uniform grid over the map's pixel coordinates answering "what is near this point" for nodes and vehicles.
+// Nodes never move, so they are bucketed once into flat arrays. Vehicles are re-bucketed after each move, and only when they cross into
+// another cell. A cell's vehicle list is only allocated once a vehicle enters it, and each vehicle remembers where it sits in its list.
+// The index has no lock of its own: it is only changed or queried under the engine lock, like the vehicle positions it reads.
+// Region workers of a parallel tick only call changesCell(); their re-bucketing is applied in the handover phase.
+public class SpatialIndex {
+    private final CsrGraph graph;
+    private final int cellSize;
+    private final int minX, minY, cols, rows;
+
+    private final int[] nodeCellStart; // Nodes of cell c are nodeCellItems[nodeCellStart[c]] .. nodeCellItems[nodeCellStart[c + 1] - 1]
+    private final int[] nodeCellItems;
+    private final Vehicle[][] vehicleCells; // Vehicles of cell c are vehicleCells[c][0 .. vehicleCounts[c] - 1]; null until first used
+    private final int[] vehicleCounts;
+
+    public SpatialIndex(CsrGraph graph, int cellSize) {
+        this.graph = graph;
+        this.cellSize = cellSize;
+        int loX = Integer.MAX_VALUE, loY = Integer.MAX_VALUE, hiX = Integer.MIN_VALUE, hiY = Integer.MIN_VALUE;
+        for (int i = 0; i < graph.nodeCount; i++) {
+            loX = Math.min(loX, graph.xs[i]); hiX = Math.max(hiX, graph.xs[i]);
+            loY = Math.min(loY, graph.ys[i]); hiY = Math.max(hiY, graph.ys[i]);
+        }
+        if (graph.nodeCount == 0) { loX = loY = hiX = hiY = 0; }
+        minX = loX;
+        minY = loY;
+        cols = (hiX - loX) / cellSize + 1;
+        rows = (hiY - loY) / cellSize + 1;
+
+        int cells = cols * rows;
+        nodeCellStart = new int[cells + 1];
+        nodeCellItems = new int[graph.nodeCount];
+        for (int i = 0; i < graph.nodeCount; i++) nodeCellStart[cellOf(graph.xs[i], graph.ys[i]) + 1]++;
+        for (int c = 0; c < cells; c++) nodeCellStart[c + 1] += nodeCellStart[c];
+        int[] fill = Arrays.copyOf(nodeCellStart, cells);
+        for (int i = 0; i < graph.nodeCount; i++) nodeCellItems[fill[cellOf(graph.xs[i], graph.ys[i])]++] = i;
+
+        vehicleCells = new Vehicle[cells][];
+        vehicleCounts = new int[cells];
+    }
+
+    private int column(double x) { return clamp((int) Math.floor((x - minX) / cellSize), cols); }
+    private int row(double y) { return clamp((int) Math.floor((y - minY) / cellSize), rows); }
+    private int cellOf(double x, double y) { return row(y) * cols + column(x); }
+
+    private static int clamp(int v, int size) {
+        return v < 0 ? 0 : (v >= size ? size - 1 : v);
+    }
+
+    // Interpolated map position of a vehicle on its current road (same formula the renderer uses, without the lane offset).
+    public static double vehicleX(Vehicle v) {
+        Node a = v.current(), b = v.next();
+        if (a == null) return 0;
+        return b == null ? a.x : a.x + (b.x - a.x) * v.progress();
+    }
+
+    public static double vehicleY(Vehicle v) {
+        Node a = v.current(), b = v.next();
+        if (a == null) return 0;
+        return b == null ? a.y : a.y + (b.y - a.y) * v.progress();
+    }
+
+    // True if the vehicle has moved out of the cell it is bucketed in. Only reads, so region workers may call it concurrently.
+    public boolean changesCell(Vehicle v) {
+        return cellOf(vehicleX(v), vehicleY(v)) != v.spatialCell;
+    }
+
+    // Re-buckets a vehicle after it moved. Cheap when it stays in the same cell, which is almost always the case.
+    public void update(Vehicle v) {
+        int cell = cellOf(vehicleX(v), vehicleY(v));
+        if (cell == v.spatialCell) return;
+        if (v.spatialCell >= 0) removeFromCell(v);
+        Vehicle[] list = vehicleCells[cell];
+        int count = vehicleCounts[cell];
+        if (list == null) {
+            list = vehicleCells[cell] = new Vehicle[4];
+        } else if (count == list.length) {
+            list = vehicleCells[cell] = Arrays.copyOf(list, count * 2);
+        }
+        list[count] = v;
+        vehicleCounts[cell] = count + 1;
+        v.spatialCell = cell;
+        v.spatialEntry = count;
+    }
+
+    public void remove(Vehicle v) {
+        if (v.spatialCell >= 0) {
+            removeFromCell(v);
+            v.spatialCell = -1;
+        }
+    }
+
+    public void clearVehicles() {
+        for (int c = 0; c < vehicleCells.length; c++) {
+            Vehicle[] list = vehicleCells[c];
+            if (list == null) continue;
+            for (int k = 0; k < vehicleCounts[c]; k++) list[k].spatialCell = -1;
+            Arrays.fill(list, 0, vehicleCounts[c], null);
+            vehicleCounts[c] = 0;
+        }
+    }
+
+    // Swap-remove: the cell's last vehicle takes the freed entry, since order inside a cell does not matter.
+    private void removeFromCell(Vehicle v) {
+        int cell = v.spatialCell;
+        Vehicle[] list = vehicleCells[cell];
+        int last = --vehicleCounts[cell];
+        Vehicle moved = list[last];
+        list[v.spatialEntry] = moved;
+        moved.spatialEntry = v.spatialEntry;
+        list[last] = null;
+    }
+
+    // All nodes within 'radius' pixels of (x, y).
+    public List<Node> nodesInRange(double x, double y, double radius) {
+        List<Node> result = new ArrayList<>();
+        int c0 = column(x - radius), c1 = column(x + radius), r0 = row(y - radius), r1 = row(y + radius);
+        double r2 = radius * radius;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = nodeCellStart[cell]; k < nodeCellStart[cell + 1]; k++) {
+                    int i = nodeCellItems[k];
+                    double dx = graph.xs[i] - x, dy = graph.ys[i] - y;
+                    if (dx * dx + dy * dy <= r2) result.add(graph.nodes[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    // All vehicles within 'radius' pixels of (x, y).
+    public List<Vehicle> vehiclesInRange(double x, double y, double radius) {
+        List<Vehicle> result = new ArrayList<>();
+        int c0 = column(x - radius), c1 = column(x + radius), r0 = row(y - radius), r1 = row(y + radius);
+        double r2 = radius * radius;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int k = 0; k < vehicleCounts[cell]; k++) {
+                    Vehicle v = vehicleCells[cell][k];
+                    double dx = vehicleX(v) - x, dy = vehicleY(v) - y;
+                    if (dx * dx + dy * dy <= r2) result.add(v);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Nearest node to (x, y) within maxRadius pixels, or null. Candidates come from the cells overlapping the search circle.
+    public Node nearestNode(double x, double y, double maxRadius) {
+        Node best = null;
+        double bestDist = maxRadius * maxRadius;
+        for (Node n : nodesInRange(x, y, maxRadius)) {
+            double d = (n.x - x) * (n.x - x) + (n.y - y) * (n.y - y);
+            if (d <= bestDist) {
+                bestDist = d;
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    // Nearest vehicle to (x, y) within maxRadius pixels, or null.
+    public Vehicle nearestVehicle(double x, double y, double maxRadius) {
+        Vehicle best = null;
+        double bestDist = maxRadius * maxRadius;
+        for (Vehicle v : vehiclesInRange(x, y, maxRadius)) {
+            double dx = vehicleX(v) - x, dy = vehicleY(v) - y;
+            double d = dx * dx + dy * dy;
+            if (d <= bestDist) {
+                bestDist = d;
+                best = v;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,57 @@
+package simulation;
+
+import java.util.Arrays;
+
+// Work list of one region during a tick. A lane that is bound to a region defers every hop onto a road of another region, and every
+// end of path, to the handover phase; an unbound lane (region -1) finishes them immediately. Edge queues are FIFO per priority, and
+// each queue only receives move-phase entries from the one region that owns it (in slot order) followed by the handovers in region
+// order, so the order of any queue does not depend on how regions were scheduled across threads. A bound lane also keeps the roads
+// whose queues it changed, for the rerouter's change log, and the vehicles that crossed into another spatial index cell; both are
+// applied lane by lane in region order during the handover.
+final class TickLane {
+    final int region;
+
+    int[] slots = new int[64];
+    int slotCount;
+    int[] deferred = new int[16]; // slot << 1 | 1 if the vehicle reached the end of its path
+    int deferredCount;
+    int[] changedEdges = new int[16]; // CSR ids of roads entered or left, in the order it happened
+    int changedCount;
+    int[] recells = new int[16];  // Slots of vehicles to re-bucket in the spatial index
+    int recellCount;
+
+    TickLane(int region) {
+        this.region = region;
+    }
+
+    boolean isBound() {
+        return region >= 0;
+    }
+
+    void begin() {
+        slotCount = 0;
+        deferredCount = 0;
+        changedCount = 0;
+        recellCount = 0;
+    }
+
+    void add(int slot) {
+        if (slotCount == slots.length) slots = Arrays.copyOf(slots, slotCount * 2);
+        slots[slotCount++] = slot;
+    }
+
+    void defer(int slot, boolean endOfPath) {
+        if (deferredCount == deferred.length) deferred = Arrays.copyOf(deferred, deferredCount * 2);
+        deferred[deferredCount++] = (slot << 1) | (endOfPath ? 1 : 0);
+    }
+
+    void edgeChanged(int edge) {
+        if (changedCount == changedEdges.length) changedEdges = Arrays.copyOf(changedEdges, changedCount * 2);
+        changedEdges[changedCount++] = edge;
+    }
+
+    void cellChanged(int slot) {
+        if (recellCount == recells.length) recells = Arrays.copyOf(recells, recellCount * 2);
+        recells[recellCount++] = slot;
+    }
+}
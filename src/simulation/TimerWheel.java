@@ -0,0 +1,130 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Hashed timer wheel on the simulation clock, for actions scheduled ticks ahead (bus waves, and whatever else needs to happen at
+// a given simulated time). A timer goes into the bucket of its due tick modulo the wheel size, in a doubly linked list, so
+// scheduling and cancelling are O(1); each tick visits one bucket and fires the timers that are due, leaving those a whole
+// revolution or more further out. Timers due at the same tick fire in the order they were scheduled, so a run is reproducible.
+// Everything runs on the tick under the store lock: no threads, however many timers are pending.
+final class TimerWheel<T> {
+    static final class Timer<T> {
+        final long due;
+        final T payload;
+        private final long sequence;
+        private Timer<T> prev, next;
+        private boolean pending = true;
+
+        private Timer(long due, long sequence, T payload) {
+            this.due = due;
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        boolean isPending() {
+            return pending;
+        }
+    }
+
+    private final Timer<T>[] heads;
+    private final Timer<T>[] tails;
+    private final int mask;
+    private long now;          // Last tick advanced to; new timers are due after it
+    private long sequence = 0;
+    private int size = 0;
+    private final List<Timer<T>> firing = new ArrayList<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(int bucketsPowerOfTwo, long now) {
+        int buckets = Integer.highestOneBit(Math.max(2, bucketsPowerOfTwo));
+        heads = (Timer<T>[]) new Timer[buckets];
+        tails = (Timer<T>[]) new Timer[buckets];
+        mask = buckets - 1;
+        this.now = now;
+    }
+
+    // Schedules 'payload' for tick 'due'. A due tick that has already been advanced to fires with the next one.
+    Timer<T> schedule(long due, T payload) {
+        Timer<T> t = new Timer<>(Math.max(due, now + 1), sequence++, payload);
+        int b = (int) (t.due & mask);
+        t.prev = tails[b];
+        if (tails[b] != null) tails[b].next = t;
+        else heads[b] = t;
+        tails[b] = t;
+        size++;
+        return t;
+    }
+
+    // Removes a pending timer; returns false if it already fired or was cancelled.
+    boolean cancel(Timer<T> t) {
+        if (!t.pending) return false;
+        int b = (int) (t.due & mask);
+        if (t.prev != null) t.prev.next = t.next;
+        else heads[b] = t.next;
+        if (t.next != null) t.next.prev = t.prev;
+        else tails[b] = t.prev;
+        t.prev = t.next = null;
+        t.pending = false;
+        size--;
+        return true;
+    }
+
+    // Advances the clock to 'tick' and fires every timer due up to it, in (due tick, scheduling order).
+    void advance(long tick, Consumer<T> fire) {
+        if (tick - now > mask) { // Long jump: collect instead of visiting every tick on the way
+            now = tick; // Set first, so timers scheduled by the fired actions are due after the jump
+            for (Timer<T> t : pending()) {
+                if (t.due > tick) break;
+                if (cancel(t)) fire.accept(t.payload);
+            }
+            return;
+        }
+        while (now < tick) {
+            now++;
+            int b = (int) (now & mask);
+            for (Timer<T> t = heads[b]; t != null; t = t.next) {
+                if (t.due == now) firing.add(t);
+            }
+            // Fired actions may schedule (always after 'now') or cancel timers, so the bucket is collected before anything fires
+            for (Timer<T> t : firing) {
+                if (cancel(t)) fire.accept(t.payload);
+            }
+            firing.clear();
+        }
+    }
+
+    // Pending timers in firing order, e.g. for a checkpoint.
+    List<Timer<T>> pending() {
+        List<Timer<T>> out = new ArrayList<>(size);
+        for (Timer<T> head : heads) {
+            for (Timer<T> t = head; t != null; t = t.next) out.add(t);
+        }
+        out.sort((a, b) -> a.due != b.due ? Long.compare(a.due, b.due) : Long.compare(a.sequence, b.sequence));
+        return out;
+    }
+
+    // Cancels every pending timer.
+    void clear() {
+        for (int b = 0; b <= mask; b++) {
+            for (Timer<T> t = heads[b]; t != null; t = t.next) t.pending = false;
+            heads[b] = tails[b] = null;
+        }
+        size = 0;
+    }
+
+    // Cancels everything and moves the clock to 'tick' (e.g. after a restore).
+    void reset(long tick) {
+        clear();
+        now = tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,17 @@
+package simulation;
+
+import models.Node;
+import models.VehicleType;
+
+// A pending trip for batch spawning: where a vehicle of a given type should start and where it should go.
+public class TripRequest {
+    public final Node start;
+    public final Node end;
+    public final VehicleType type;
+
+    public TripRequest(Node start, Node end, VehicleType type) {
+        this.start = start;
+        this.end = end;
+        this.type = type;
+    }
+}